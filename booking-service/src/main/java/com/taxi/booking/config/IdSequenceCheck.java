@@ -0,0 +1,60 @@
+package com.taxi.booking.config;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Makes sure every pooled-lo id sequence is ahead of its table before anything inserts.
+ *
+ * Hibernate takes a block of ids starting at each value the sequence hands out. A sequence
+ * created by ddl-auto, or one whose migration setval never ran, starts at 1 under a table
+ * that already holds rows, and inserts would fail on duplicate keys. Runs after the schema
+ * update and before the web server, listeners and schedulers start; a sequence found
+ * behind is moved past MAX(id) and a warning logged.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class IdSequenceCheck {
+
+    private static final Logger log = LoggerFactory.getLogger(IdSequenceCheck.class);
+
+    // Table -> its id sequence, as named in the entities' @SequenceGenerator
+    private static final Map<String, String> SEQUENCES = Map.of(
+            "bookings", "bookings_seq",
+            "users", "users_seq",
+            "outbox_events", "outbox_events_seq");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdSequenceCheck(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void advanceLaggingSequences() {
+        SEQUENCES.forEach(this::advanceIfBehind);
+    }
+
+    private void advanceIfBehind(String table, String sequence) {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+        if (maxId == null) {
+            return;
+        }
+        // The value the next nextval() will return
+        Long next = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(last_value + increment_by, start_value) FROM pg_sequences "
+                        + "WHERE schemaname = current_schema() AND sequencename = ?",
+                Long.class, sequence);
+        if (next != null && next <= maxId) {
+            jdbcTemplate.queryForObject("SELECT setval(?, ?)", Long.class, sequence, maxId);
+            log.warn("Sequence {} was behind {} (next {}, max id {}); moved it past the existing ids",
+                    sequence, table, next, maxId);
+        }
+    }
+}
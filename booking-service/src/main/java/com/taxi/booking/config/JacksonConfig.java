@@ -0,0 +1,17 @@
+package com.taxi.booking.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JacksonConfig {
+    
+    // Replaces reflective getter/setter/constructor calls with generated lambdas in the
+    // auto-configured ObjectMapper, which (de)serialises every Kafka event
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+}
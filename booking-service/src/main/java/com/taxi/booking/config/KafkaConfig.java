@@ -1,8 +1,13 @@
 package com.taxi.booking.config;
 
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.TopicConfig;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.kafka.config.TopicBuilder;
 
 @Configuration
 @EnableKafka
@@ -10,4 +15,38 @@ import org.springframework.kafka.annotation.EnableKafka;
 public class KafkaConfig {
     // Kafka configuration will only be loaded if app.kafka.enabled=true
     // This class will not be loaded at all if Kafka is disabled
-} 
\ No newline at end of file
+    
+    // booking-events and driver-locations must have the same partition count: the matchers
+    // rely on partition n of both topics holding the same regions
+    @Value("${app.kafka.booking-partitions:6}")
+    private int partitions;
+    
+    @Value("${app.kafka.replicas:1}")
+    private int replicas;
+    
+    @Bean
+    public NewTopic bookingEventsTopic(@Value("${app.kafka.topic:booking-events}") String topic) {
+        return TopicBuilder.name(topic)
+                .partitions(partitions)
+                .replicas(replicas)
+                .build();
+    }
+    
+    /**
+     * Latest location per driver. Compaction keeps one record per key, so replaying the topic
+     * from the start rebuilds the geo index without the full ping history.
+     */
+    @Bean
+    public NewTopic driverLocationsTopic(@Value("${app.kafka.driver-location-topic:driver-locations}") String topic) {
+        return TopicBuilder.name(topic)
+                .partitions(partitions)
+                .replicas(replicas)
+                .compact()
+                // Roll segments every 10 minutes so the cleaner can compact them; only closed segments are cleaned
+                .config(TopicConfig.SEGMENT_MS_CONFIG, "600000")
+                .config(TopicConfig.MIN_CLEANABLE_DIRTY_RATIO_CONFIG, "0.1")
+                // Keep tombstones long enough for a restarting instance to replay them
+                .config(TopicConfig.DELETE_RETENTION_MS_CONFIG, "3600000")
+                .build();
+    }
+}
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.taxi.booking.config;
 
+import com.taxi.booking.websocket.AdminDashboardWebSocketHandler;
 import com.taxi.booking.websocket.DriverLocationWebSocketHandler;
 import com.taxi.booking.websocket.DriverNotificationWebSocketHandler;
 import com.taxi.booking.websocket.RiderNotificationWebSocketHandler;
@@ -15,13 +16,16 @@ public class WebSocketConfig implements WebSocketConfigurer {
     private final DriverLocationWebSocketHandler driverLocationWebSocketHandler;
     private final DriverNotificationWebSocketHandler driverNotificationWebSocketHandler;
     private final RiderNotificationWebSocketHandler riderNotificationWebSocketHandler;
+    private final AdminDashboardWebSocketHandler adminDashboardWebSocketHandler;
     
     public WebSocketConfig(DriverLocationWebSocketHandler driverLocationWebSocketHandler,
                           DriverNotificationWebSocketHandler driverNotificationWebSocketHandler,
-                          RiderNotificationWebSocketHandler riderNotificationWebSocketHandler) {
+                          RiderNotificationWebSocketHandler riderNotificationWebSocketHandler,
+                          AdminDashboardWebSocketHandler adminDashboardWebSocketHandler) {
         this.driverLocationWebSocketHandler = driverLocationWebSocketHandler;
         this.driverNotificationWebSocketHandler = driverNotificationWebSocketHandler;
         this.riderNotificationWebSocketHandler = riderNotificationWebSocketHandler;
+        this.adminDashboardWebSocketHandler = adminDashboardWebSocketHandler;
     }
     
     @Override
@@ -34,5 +38,8 @@ public class WebSocketConfig implements WebSocketConfigurer {
         
         registry.addHandler(riderNotificationWebSocketHandler, "/ws/rider-notifications")
                 .setAllowedOrigins("*");
+        
+        registry.addHandler(adminDashboardWebSocketHandler, "/ws/admin")
+                .setAllowedOrigins("*");
     }
 } 
\ No newline at end of file
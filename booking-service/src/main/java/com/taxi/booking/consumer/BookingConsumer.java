@@ -1,7 +1,11 @@
 package com.taxi.booking.consumer;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.taxi.booking.service.GeoMatchingService;
+import com.taxi.booking.model.BookingRequested;
+import com.taxi.booking.model.DriverAssigned;
 import com.taxi.booking.model.DriverLocation;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
@@ -11,7 +15,6 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
 
-import java.util.Map;
 import java.util.List;
 
 @Component
@@ -20,13 +23,18 @@ public class BookingConsumer {
     
     private static final Logger log = LoggerFactory.getLogger(BookingConsumer.class);
     
+    // Radius for the fallback search when nobody is within the regular matching radius
+    private static final double FALLBACK_SEARCH_RADIUS_KM = 50;
+    
     private final GeoMatchingService geoMatchingService;
-    private final ObjectMapper objectMapper;
+    private final ObjectReader bookingReader;
+    private final ObjectWriter assignmentWriter;
     private final KafkaTemplate<String, String> kafkaTemplate;
 
     public BookingConsumer(GeoMatchingService geoMatchingService, ObjectMapper objectMapper, @Autowired(required = false) KafkaTemplate<String, String> kafkaTemplate) {
         this.geoMatchingService = geoMatchingService;
-        this.objectMapper = objectMapper;
+        this.bookingReader = objectMapper.readerFor(BookingRequested.class);
+        this.assignmentWriter = objectMapper.writerFor(DriverAssigned.class);
         this.kafkaTemplate = kafkaTemplate;
         log.info("BookingConsumer initialized with Kafka support: {}", kafkaTemplate != null);
     }
@@ -36,33 +44,29 @@ public class BookingConsumer {
         try {
             log.info("Received booking event: {}", bookingJson);
             
-            // Parse booking JSON
-            Map<String, Object> booking = objectMapper.readValue(bookingJson, Map.class);
-            
-            // Extract pickup location
-            String pickupLocation = (String) booking.get("pickupLocation");
-            String[] coords = pickupLocation.split(",");
-            double lat = Double.parseDouble(coords[0]);
-            double lng = Double.parseDouble(coords[1]);
+            BookingRequested booking = bookingReader.readValue(bookingJson);
+            double lat = booking.pickupLat();
+            double lng = booking.pickupLng();
             
             // First try to find nearest driver within reasonable distance
             var nearestDriver = geoMatchingService.findNearestDriver(lat, lng);
             
             if (nearestDriver.isPresent()) {
                 log.info("Found nearest driver {} for booking {}", 
-                        nearestDriver.get().getDriverId(), booking.get("id"));
+                        nearestDriver.get().getDriverId(), booking.id());
                 assignDriverToBooking(booking, nearestDriver.get().getDriverId());
             } else {
-                // If no nearby driver, assign any available driver
-                List<DriverLocation> allDrivers = geoMatchingService.getAllDrivers();
-                if (!allDrivers.isEmpty()) {
-                    // Assign the first available driver
-                    String assignedDriverId = allDrivers.get(0).getDriverId();
-                    log.info("No nearby drivers found. Assigning available driver {} to booking {}", 
-                            assignedDriverId, booking.get("id"));
+                // If no nearby driver, widen the ring search to the whole city
+                List<DriverLocation> fallbackDrivers = geoMatchingService.findNearestDrivers(
+                        lat, lng, 1, FALLBACK_SEARCH_RADIUS_KM);
+                if (!fallbackDrivers.isEmpty()) {
+                    // Assign the nearest driver found in the wider search
+                    String assignedDriverId = fallbackDrivers.get(0).getDriverId();
+                    log.info("No nearby drivers found. Assigning nearest available driver {} to booking {}", 
+                            assignedDriverId, booking.id());
                     assignDriverToBooking(booking, assignedDriverId);
                 } else {
-                    log.warn("No drivers available for booking {}. Creating a demo driver assignment.", booking.get("id"));
+                    log.warn("No drivers available for booking {}. Creating a demo driver assignment.", booking.id());
                     // Create a demo driver assignment for testing purposes
                     assignDriverToBooking(booking, "demo-driver");
                 }
@@ -73,20 +77,10 @@ public class BookingConsumer {
         }
     }
     
-    private void assignDriverToBooking(Map<String, Object> booking, String driverId) {
+    private void assignDriverToBooking(BookingRequested booking, String driverId) {
         try {
-            // Create driver assignment event with additional booking details
-            Map<String, Object> assignment = Map.of(
-                "bookingId", booking.get("id"),
-                "driverId", driverId,
-                "status", "ASSIGNED",
-                "timestamp", System.currentTimeMillis(),
-                "distance", booking.get("distance") != null ? booking.get("distance") : 5.0,
-                "duration", booking.get("duration") != null ? booking.get("duration") : 10.0,
-                "price", booking.get("price") != null ? booking.get("price") : 100.0
-            );
-            
-            String assignmentJson = objectMapper.writeValueAsString(assignment);
+            // Create driver assignment event with the booking's fare details
+            String assignmentJson = assignmentWriter.writeValueAsString(DriverAssigned.of(booking, driverId));
             
             // Send to driver-assignment topic if Kafka is available
             if (kafkaTemplate != null) {
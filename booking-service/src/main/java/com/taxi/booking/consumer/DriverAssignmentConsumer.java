@@ -1,76 +1,112 @@
 package com.taxi.booking.consumer;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.taxi.booking.model.Booking;
-import com.taxi.booking.repository.BookingRepository;
+import com.taxi.booking.model.DriverAssigned;
+import com.taxi.booking.service.BookingService;
 import com.taxi.booking.service.DriverNotificationService;
-import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
+/**
+ * Applies the matcher's driver assignments a poll at a time.
+ *
+ * A batch is written with one JDBC batch update and committed before any driver is
+ * notified, so a driver never sees a ride request the database does not have yet. The
+ * notifications then go out in parallel, one task per driver: a driver's WebSocket session
+ * only takes one send at a time.
+ */
 @Component
 @ConditionalOnProperty(name = "app.kafka.enabled", havingValue = "true", matchIfMissing = false)
 public class DriverAssignmentConsumer {
     
     private static final Logger log = LoggerFactory.getLogger(DriverAssignmentConsumer.class);
     
-    private final BookingRepository bookingRepository;
-    private final ObjectMapper objectMapper;
+    private final BookingService bookingService;
+    private final ObjectReader assignmentReader;
     private final DriverNotificationService driverNotificationService;
 
-    public DriverAssignmentConsumer(BookingRepository bookingRepository, ObjectMapper objectMapper, DriverNotificationService driverNotificationService) {
-        this.bookingRepository = bookingRepository;
-        this.objectMapper = objectMapper;
+    @Value("${app.kafka.assignment-notify-threads:4}")
+    private int notifyThreads = 4;
+    
+    private ExecutorService notifyPool;
+
+    public DriverAssignmentConsumer(BookingService bookingService, ObjectMapper objectMapper, DriverNotificationService driverNotificationService) {
+        this.bookingService = bookingService;
+        this.assignmentReader = objectMapper.readerFor(DriverAssigned.class);
         this.driverNotificationService = driverNotificationService;
     }
     
-    @KafkaListener(topics = "driver-assignments", groupId = "booking-service")
-    public void handleDriverAssignment(String assignmentJson) {
+    @PostConstruct
+    public void start() {
+        AtomicInteger threads = new AtomicInteger();
+        notifyPool = Executors.newFixedThreadPool(notifyThreads, runnable -> {
+            Thread thread = new Thread(runnable, "assignment-notify-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    @PreDestroy
+    public void stop() {
+        notifyPool.shutdown();
+    }
+    
+    @KafkaListener(topics = "driver-assignments", groupId = "booking-service", batch = "true")
+    public void handleDriverAssignments(List<String> assignmentJsons) {
+        log.debug("Received {} driver assignments", assignmentJsons.size());
+        
+        // Booking ID -> latest assignment in this poll, in arrival order
+        Map<Long, DriverAssigned> assignments = new LinkedHashMap<>();
+        for (String assignmentJson : assignmentJsons) {
+            try {
+                DriverAssigned assignment = assignmentReader.readValue(assignmentJson);
+                assignments.remove(assignment.bookingId());
+                assignments.put(assignment.bookingId(), assignment);
+            } catch (Exception e) {
+                log.error("Skipping unprocessable driver assignment: {}", assignmentJson, e);
+            }
+        }
+        if (assignments.isEmpty()) {
+            return;
+        }
+        
+        // Throws on a database error, so the container redelivers the poll
+        List<Booking> updated = bookingService.applyAssignments(new ArrayList<>(assignments.values()));
+        log.info("Applied {} of {} driver assignments", updated.size(), assignments.size());
+        
+        Map<String, List<Booking>> byDriver = updated.stream()
+                .collect(Collectors.groupingBy(Booking::getDriverId, LinkedHashMap::new, Collectors.toList()));
+        byDriver.forEach((driverId, bookings) -> notifyPool.execute(() -> {
+            for (Booking booking : bookings) {
+                notifyDriver(assignments.get(booking.getId()), booking);
+            }
+        }));
+    }
+    
+    private void notifyDriver(DriverAssigned assignment, Booking booking) {
         try {
-            log.info("Received driver assignment: {}", assignmentJson);
-            
-            // Parse assignment JSON
-            Map<String, Object> assignment = objectMapper.readValue(assignmentJson, Map.class);
-            
-            Long bookingId = Long.valueOf(assignment.get("bookingId").toString());
-            String driverId = (String) assignment.get("driverId");
-            String status = (String) assignment.get("status");
-            
-            // Find and update the booking
-            bookingRepository.findById(bookingId).ifPresent(booking -> {
-                booking.setDriverId(driverId);
-                booking.setStatus(status);
-                booking.setDriverAssignmentStatus("PENDING");
-                bookingRepository.save(booking);
-                log.info("Updated booking {} with driver {} and status {}", 
-                        bookingId, driverId, status);
-                
-                // Send notification to the assigned driver
-                try {
-                    // Extract distance, duration, and price from assignment if available
-                    Double distance = assignment.get("distance") != null ? 
-                        Double.valueOf(assignment.get("distance").toString()) : 5.0;
-                    Double duration = assignment.get("duration") != null ? 
-                        Double.valueOf(assignment.get("duration").toString()) : 10.0;
-                    Double price = assignment.get("price") != null ? 
-                        Double.valueOf(assignment.get("price").toString()) : 100.0;
-                    
-                    driverNotificationService.sendRideRequestToDriver(driverId, booking, distance, duration, price);
-                    log.info("Sent notification to driver {} for booking {}", driverId, bookingId);
-                } catch (Exception e) {
-                    log.error("Error sending notification to driver {} for booking {}", driverId, bookingId, e);
-                }
-            }); 
-                
-            
+            driverNotificationService.sendRideRequestToDriver(assignment.driverId(), booking,
+                    assignment.distance(), assignment.duration(), assignment.price());
+            log.info("Sent notification to driver {} for booking {}", assignment.driverId(), booking.getId());
         } catch (Exception e) {
-            log.error("Error processing driver assignment", e);
+            log.error("Error sending notification to driver {} for booking {}", assignment.driverId(), booking.getId(), e);
         }
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,179 @@
+package com.taxi.booking.consumer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taxi.booking.model.DriverLocation;
+import com.taxi.booking.producer.DriverLocationProducer;
+import com.taxi.booking.producer.RegionPartitioner;
+import com.taxi.booking.service.GeoMatchingService;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Warm start: loads every driver's last known location from the compacted driver-locations
+ * topic into the geo index before the application reports ready.
+ *
+ * Runs as an ApplicationRunner, and Spring Boot only switches readiness to
+ * ACCEPTING_TRAFFIC once all runners have finished. The topic is read once from the start
+ * up to the end offsets seen on entry, keeping only the newest record per key. A driver
+ * near a region border has a key per region it is published under; its newest location
+ * across them is loaded, and the regions still holding one are handed to the producer so
+ * they are tombstoned once the driver leaves them. The index is then filled in one pass. Drivers that pinged meanwhile are left as they are.
+ * A restored driver counts as last seen at its record's timestamp and takes no rides until
+ * its app reconnects; if it never does, the presence sweep drops it as it would any
+ * silent driver.
+ * Locations older than the presence heartbeat timeout are left out and tombstoned: their
+ * drivers would be expired at once, and were likely lost with an instance that never
+ * got to tombstone them.
+ */
+@Component
+@ConditionalOnProperty(name = "app.kafka.enabled", havingValue = "true", matchIfMissing = false)
+public class DriverLocationBootstrap implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(DriverLocationBootstrap.class);
+
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+
+    private final ConsumerFactory<String, String> consumerFactory;
+    private final GeoMatchingService geoMatchingService;
+    private final DriverLocationProducer driverLocationProducer;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.kafka.driver-location-topic:driver-locations}")
+    private String topic = "driver-locations";
+
+    @Value("${app.kafka.bootstrap-timeout-seconds:30}")
+    private long timeoutSeconds = 30;
+
+    @Value("${app.presence.heartbeat-timeout-seconds:60}")
+    private long heartbeatTimeoutSeconds = 60;
+
+    public DriverLocationBootstrap(ConsumerFactory<String, String> consumerFactory, GeoMatchingService geoMatchingService,
+                                   DriverLocationProducer driverLocationProducer, ObjectMapper objectMapper) {
+        this.consumerFactory = consumerFactory;
+        this.geoMatchingService = geoMatchingService;
+        this.driverLocationProducer = driverLocationProducer;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.nanoTime();
+        try {
+            Map<String, ConsumerRecord<String, String>> latest = readLatest();
+            int loaded = load(latest);
+            log.info("Loaded {} driver locations from {} ({} keys) in {} ms", loaded, topic, latest.size(),
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            // Not fatal: drivers reappear with their next ping
+            log.warn("Could not load driver locations from {}: {}", topic, e.getMessage());
+        }
+    }
+
+    /**
+     * Newest record per key across all partitions; a tombstone if the driver left that region
+     */
+    private Map<String, ConsumerRecord<String, String>> readLatest() {
+        Map<String, ConsumerRecord<String, String>> latest = new HashMap<>();
+
+        // Manual assignment, no group: nothing is committed
+        Properties properties = new Properties();
+        properties.setProperty("enable.auto.commit", "false");
+        try (Consumer<String, String> consumer = consumerFactory.createConsumer(null, null, "-bootstrap", properties)) {
+            List<PartitionInfo> infos = consumer.partitionsFor(topic);
+            if (infos == null || infos.isEmpty()) {
+                return latest;
+            }
+            List<TopicPartition> partitions = infos.stream()
+                    .map(info -> new TopicPartition(topic, info.partition()))
+                    .toList();
+            consumer.assign(partitions);
+            consumer.seekToBeginning(partitions);
+            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(timeoutSeconds).toNanos();
+            while (!caughtUp(consumer, endOffsets)) {
+                if (System.nanoTime() > deadline) {
+                    log.warn("Timed out reading {}; starting with a partial driver index", topic);
+                    break;
+                }
+                for (ConsumerRecord<String, String> record : consumer.poll(POLL_TIMEOUT)) {
+                    // One key always lands on one partition, so a later offset is a newer record
+                    if (record.key() != null && RegionPartitioner.idOf(record.key()) != null) {
+                        latest.put(record.key(), record);
+                    }
+                }
+            }
+        }
+        return latest;
+    }
+
+    private int load(Map<String, ConsumerRecord<String, String>> latest) throws Exception {
+        // Driver ID -> regions still holding a location, and the newest of those locations
+        Map<String, Set<String>> liveRegions = new HashMap<>();
+        Map<String, ConsumerRecord<String, String>> newest = new HashMap<>();
+        for (ConsumerRecord<String, String> record : latest.values()) {
+            if (record.value() == null) {
+                continue;
+            }
+            String driverId = RegionPartitioner.idOf(record.key());
+            liveRegions.computeIfAbsent(driverId, id -> new HashSet<>()).add(RegionPartitioner.regionOf(record.key()));
+            ConsumerRecord<String, String> current = newest.get(driverId);
+            if (current == null || record.timestamp() > current.timestamp()) {
+                newest.put(driverId, record);
+            }
+        }
+
+        long cutoff = System.currentTimeMillis() - heartbeatTimeoutSeconds * 1000;
+        int loaded = 0;
+        int stale = 0;
+        for (Map.Entry<String, ConsumerRecord<String, String>> entry : newest.entrySet()) {
+            ConsumerRecord<String, String> record = entry.getValue();
+            String driverId = entry.getKey();
+            Set<String> regions = liveRegions.get(driverId);
+            if (record.timestamp() < cutoff) {
+                driverLocationProducer.retire(driverId, regions);
+                stale++;
+                continue;
+            }
+            driverLocationProducer.seedPublishedRegions(driverId, regions);
+            if (!geoMatchingService.hasDriver(driverId)) {
+                DriverLocation location = objectMapper.readValue(record.value(), DriverLocation.class);
+                location.setTimestamp(record.timestamp());
+                geoMatchingService.restoreDriverLocation(location);
+                loaded++;
+            }
+        }
+        if (stale > 0) {
+            log.info("Skipped {} driver locations older than {}s", stale, heartbeatTimeoutSeconds);
+        }
+        return loaded;
+    }
+
+    private static boolean caughtUp(Consumer<String, String> consumer, Map<TopicPartition, Long> endOffsets) {
+        for (Map.Entry<TopicPartition, Long> end : endOffsets.entrySet()) {
+            if (consumer.position(end.getKey()) < end.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
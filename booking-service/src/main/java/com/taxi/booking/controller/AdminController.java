@@ -1,10 +1,15 @@
 package com.taxi.booking.controller;
 
-import com.taxi.booking.model.Booking;
+import com.taxi.booking.model.BookingSummary;
+import com.taxi.booking.model.SessionPrincipal;
 import com.taxi.booking.model.User;
-import com.taxi.booking.repository.BookingRepository;
+import com.taxi.booking.model.UserProfile;
 import com.taxi.booking.repository.UserRepository;
+import com.taxi.booking.service.AdminStatsService;
 import com.taxi.booking.service.AuthService;
+import com.taxi.booking.service.BookingService;
+import com.taxi.booking.util.AdminViews;
+import com.taxi.booking.util.Keyset;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,7 +17,6 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -28,40 +32,33 @@ public class AdminController {
     private UserRepository userRepository;
     
     @Autowired
-    private BookingRepository bookingRepository;
+    private AuthService authService;
     
     @Autowired
-    private AuthService authService;
+    private BookingService bookingService;
+    
+    @Autowired
+    private AdminStatsService adminStatsService;
     
     @GetMapping("/users")
-    public ResponseEntity<List<Map<String, Object>>> getAllUsers(@RequestHeader("Authorization") String sessionToken) {
+    public ResponseEntity<List<Map<String, Object>>> getAllUsers(
+            @RequestHeader("Authorization") String sessionToken,
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "" + Keyset.DEFAULT_PAGE_SIZE) int limit) {
         try {
             // Verify admin access
-            User adminUser = getAdminUser(sessionToken);
+            SessionPrincipal adminUser = getAdminUser(sessionToken);
             if (adminUser == null) {
                 return ResponseEntity.status(401).build();
             }
             
-            List<User> users = userRepository.findByRole(User.UserRole.RIDER);
+            List<UserProfile> users = userRepository.findProfilesByRoleAndIdLessThanOrderByIdDesc(User.UserRole.RIDER,
+                    Keyset.before(before), Keyset.limit(limit));
             List<Map<String, Object>> userList = users.stream()
-                .map(user -> {
-                    Map<String, Object> userMap = new HashMap<>();
-                    userMap.put("id", user.getId());
-                    userMap.put("username", user.getUsername());
-                    userMap.put("email", user.getEmail());
-                    userMap.put("role", user.getRole());
-                    userMap.put("phoneNumber", user.getPhoneNumber());
-                    // Map ONLINE/OFFLINE to ACTIVE/INACTIVE for frontend
-                    String displayStatus = user.getStatus() == User.Status.ONLINE ? "ACTIVE" : "INACTIVE";
-                    userMap.put("status", displayStatus);
-                    userMap.put("createdAt", user.getCreatedAt());
-                    userMap.put("vehicleType", user.getVehicleType());
-                    userMap.put("licenseNumber", user.getLicenseNumber());
-                    return userMap;
-                })
+                .map(AdminViews::rider)
                 .collect(Collectors.toList());
             
-            return ResponseEntity.ok(userList);
+            return Keyset.page(userList, limit, row -> (Long) row.get("id"));
         } catch (Exception e) {
             log.error("Error fetching users", e);
             return ResponseEntity.internalServerError().build();
@@ -69,36 +66,24 @@ public class AdminController {
     }
     
     @GetMapping("/drivers")
-    public ResponseEntity<List<Map<String, Object>>> getAllDrivers(@RequestHeader("Authorization") String sessionToken) {
+    public ResponseEntity<List<Map<String, Object>>> getAllDrivers(
+            @RequestHeader("Authorization") String sessionToken,
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "" + Keyset.DEFAULT_PAGE_SIZE) int limit) {
         try {
             // Verify admin access
-            User adminUser = getAdminUser(sessionToken);
+            SessionPrincipal adminUser = getAdminUser(sessionToken);
             if (adminUser == null) {
                 return ResponseEntity.status(401).build();
             }
             
-            List<User> drivers = userRepository.findByRole(User.UserRole.DRIVER);
+            List<UserProfile> drivers = userRepository.findProfilesByRoleAndIdLessThanOrderByIdDesc(User.UserRole.DRIVER,
+                    Keyset.before(before), Keyset.limit(limit));
             List<Map<String, Object>> driverList = drivers.stream()
-                .map(driver -> {
-                    Map<String, Object> driverMap = new HashMap<>();
-                    driverMap.put("id", driver.getId());
-                    driverMap.put("username", driver.getUsername());
-                    driverMap.put("email", driver.getEmail());
-                    driverMap.put("phoneNumber", driver.getPhoneNumber());
-                    // Map ONLINE/OFFLINE to AVAILABLE/BUSY for frontend
-                    String displayStatus = driver.getStatus() == User.Status.ONLINE ? "AVAILABLE" : "BUSY";
-                    driverMap.put("status", displayStatus);
-                    // Add accountStatus field that frontend expects
-                    String accountStatus = driver.getStatus() == User.Status.ONLINE ? "ACTIVE" : "INACTIVE";
-                    driverMap.put("accountStatus", accountStatus);
-                    driverMap.put("vehicleType", driver.getVehicleType());
-                    driverMap.put("licenseNumber", driver.getLicenseNumber());
-                    driverMap.put("createdAt", driver.getCreatedAt());
-                    return driverMap;
-                })
+                .map(AdminViews::driver)
                 .collect(Collectors.toList());
             
-            return ResponseEntity.ok(driverList);
+            return Keyset.page(driverList, limit, row -> (Long) row.get("id"));
         } catch (Exception e) {
             log.error("Error fetching drivers", e);
             return ResponseEntity.internalServerError().build();
@@ -106,33 +91,23 @@ public class AdminController {
     }
     
     @GetMapping("/bookings")
-    public ResponseEntity<List<Map<String, Object>>> getAllBookings(@RequestHeader("Authorization") String sessionToken) {
+    public ResponseEntity<List<Map<String, Object>>> getAllBookings(
+            @RequestHeader("Authorization") String sessionToken,
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "" + Keyset.DEFAULT_PAGE_SIZE) int limit) {
         try {
             // Verify admin access
-            User adminUser = getAdminUser(sessionToken);
+            SessionPrincipal adminUser = getAdminUser(sessionToken);
             if (adminUser == null) {
                 return ResponseEntity.status(401).build();
             }
             
-            List<Booking> bookings = bookingRepository.findAll();
+            List<BookingSummary> bookings = bookingService.getBookings(before, limit);
             List<Map<String, Object>> bookingList = bookings.stream()
-                .map(booking -> {
-                    Map<String, Object> bookingMap = new HashMap<>();
-                    bookingMap.put("id", booking.getId());
-                    bookingMap.put("riderId", booking.getRiderId());
-                    bookingMap.put("driverId", booking.getDriverId());
-                    bookingMap.put("pickupLocation", booking.getPickupLocation());
-                    bookingMap.put("destination", booking.getDestination());
-                    bookingMap.put("status", booking.getStatus());
-                    bookingMap.put("price", booking.getPrice());
-                    bookingMap.put("distance", booking.getDistance());
-                    bookingMap.put("vehicleType", booking.getVehicleType());
-                    bookingMap.put("createdAt", booking.getCreatedAt());
-                    return bookingMap;
-                })
+                .map(AdminViews::booking)
                 .collect(Collectors.toList());
             
-            return ResponseEntity.ok(bookingList);
+            return Keyset.page(bookingList, limit, row -> (Long) row.get("id"));
         } catch (Exception e) {
             log.error("Error fetching bookings", e);
             return ResponseEntity.internalServerError().build();
@@ -143,49 +118,13 @@ public class AdminController {
     public ResponseEntity<Map<String, Object>> getStats(@RequestHeader("Authorization") String sessionToken) {
         try {
             // Verify admin access
-            User adminUser = getAdminUser(sessionToken);
+            SessionPrincipal adminUser = getAdminUser(sessionToken);
             if (adminUser == null) {
                 return ResponseEntity.status(401).build();
             }
             
-            Map<String, Object> stats = new HashMap<>();
-            
-            // Total users
-            long totalUsers = userRepository.count();
-            stats.put("totalUsers", totalUsers);
-            
-            // Total drivers
-            long totalDrivers = userRepository.countByRole(User.UserRole.DRIVER);
-            stats.put("totalDrivers", totalDrivers);
-            
-            // Active drivers (online)
-            long activeDrivers = userRepository.countByRoleAndStatus(User.UserRole.DRIVER, User.Status.ONLINE);
-            stats.put("activeDrivers", activeDrivers);
-            
-            // Total riders
-            long totalRiders = userRepository.countByRole(User.UserRole.RIDER);
-            stats.put("totalRiders", totalRiders);
-            
-            // Total bookings
-            long totalBookings = bookingRepository.count();
-            stats.put("totalBookings", totalBookings);
-            
-            // Today's bookings
-            LocalDateTime today = LocalDateTime.now().withHour(0).withMinute(0).withSecond(0).withNano(0);
-            long todayBookings = bookingRepository.countByCreatedAtAfter(today);
-            stats.put("todayBookings", todayBookings);
-            
-            // Completed bookings
-            long completedBookings = bookingRepository.countByStatus("COMPLETED");
-            stats.put("completedBookings", completedBookings);
-            
-            // Pending bookings
-            long pendingBookings = bookingRepository.countByStatus("REQUESTED");
-            stats.put("pendingBookings", pendingBookings);
-            
-            // Total revenue (sum of all completed booking prices)
-            Double totalRevenue = bookingRepository.sumPriceByStatus("COMPLETED");
-            stats.put("totalRevenue", totalRevenue != null ? totalRevenue : 0.0);
+            // Maintained incrementally by AdminStatsService; no table scans per refresh
+            Map<String, Object> stats = adminStatsService.snapshot();
             
             // System status
             stats.put("systemStatus", "OPERATIONAL");
@@ -205,7 +144,7 @@ public class AdminController {
             @RequestHeader("Authorization") String sessionToken) {
         try {
             // Verify admin access
-            User adminUser = getAdminUser(sessionToken);
+            SessionPrincipal adminUser = getAdminUser(sessionToken);
             if (adminUser == null) {
                 return ResponseEntity.status(401).build();
             }
@@ -255,7 +194,7 @@ public class AdminController {
             @RequestHeader("Authorization") String sessionToken) {
         try {
             // Verify admin access
-            User adminUser = getAdminUser(sessionToken);
+            SessionPrincipal adminUser = getAdminUser(sessionToken);
             if (adminUser == null) {
                 return ResponseEntity.status(401).build();
             }
@@ -298,15 +237,15 @@ public class AdminController {
         }
     }
     
-    private User getAdminUser(String sessionToken) {
+    private SessionPrincipal getAdminUser(String sessionToken) {
         if (sessionToken == null || !sessionToken.startsWith("Bearer ")) {
             return null;
         }
         
         String token = sessionToken.substring(7); // Remove "Bearer " prefix
-        User user = authService.getCurrentUser(token);
+        SessionPrincipal user = authService.getCurrentUser(token);
         
-        if (user != null && user.getRole() == User.UserRole.ADMIN) {
+        if (user != null && user.isAdmin()) {
             return user;
         }
         
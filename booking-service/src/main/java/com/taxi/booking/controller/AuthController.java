@@ -1,5 +1,6 @@
 package com.taxi.booking.controller;
 
+import com.taxi.booking.model.SessionPrincipal;
 import com.taxi.booking.model.User;
 import com.taxi.booking.service.AuthService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -106,16 +107,16 @@ public class AuthController {
         }
         
         String token = sessionToken.substring(7);
-        User user = authService.getCurrentUser(token);
+        SessionPrincipal user = authService.getCurrentUser(token);
         
         if (user != null) {
             return ResponseEntity.ok(Map.of(
                 "success", true,
                 "user", Map.of(
-                    "id", user.getId(),
-                    "username", user.getUsername(),
-                    "email", user.getEmail(),
-                    "role", user.getRole()
+                    "id", user.id(),
+                    "username", user.username(),
+                    "email", user.email(),
+                    "role", user.role()
                 )
             ));
         } else {
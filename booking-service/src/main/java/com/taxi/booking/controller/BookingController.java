@@ -1,13 +1,17 @@
 package com.taxi.booking.controller;
 
 import com.taxi.booking.model.Booking;
+import com.taxi.booking.model.BookingSummary;
 import com.taxi.booking.model.DriverLocation;
 import com.taxi.booking.model.User;
+import com.taxi.booking.model.UserSummary;
 import com.taxi.booking.repository.UserRepository;
 import com.taxi.booking.service.BookingService;
 import com.taxi.booking.service.DriverNotificationService;
 import com.taxi.booking.service.PricingService;
+import com.taxi.booking.service.UserCache;
 import com.taxi.booking.util.DistanceCalculator;
+import com.taxi.booking.util.Keyset;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -35,6 +39,9 @@ public class BookingController {
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private UserCache userCache;
+    
     public BookingController(BookingService bookingService, PricingService pricingService) {
         this.bookingService = bookingService;
         this.pricingService = pricingService;
@@ -195,9 +202,13 @@ public class BookingController {
         }
     }
     
+    // List endpoints return at most `limit` bookings, newest first; a full page names the next page's `before` in X-Next-Before
+    
     @GetMapping
-    public ResponseEntity<List<Booking>> getAllBookings() {
-        return ResponseEntity.ok(bookingService.getAllBookings());
+    public ResponseEntity<List<BookingSummary>> getAllBookings(
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "" + Keyset.DEFAULT_PAGE_SIZE) int limit) {
+        return Keyset.page(bookingService.getBookings(before, limit), limit, BookingSummary::id);
     }
     
     @GetMapping("/connected-drivers")
@@ -220,8 +231,11 @@ public class BookingController {
     }
     
     @GetMapping("/rider/{riderId}")
-    public ResponseEntity<List<Booking>> getBookingsByRiderId(@PathVariable String riderId) {
-        return ResponseEntity.ok(bookingService.getBookingsByRiderId(riderId));
+    public ResponseEntity<List<BookingSummary>> getBookingsByRiderId(
+            @PathVariable String riderId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "" + Keyset.DEFAULT_PAGE_SIZE) int limit) {
+        return Keyset.page(bookingService.getBookingsByRiderId(riderId, before, limit), limit, BookingSummary::id);
     }
     
     @PutMapping("/{id}/status")
@@ -290,22 +304,26 @@ public class BookingController {
     }
     
     @GetMapping("/driver/{driverId}")
-    public ResponseEntity<List<Booking>> getDriverBookings(@PathVariable String driverId) {
-        List<Booking> bookings = bookingService.getBookingsByDriverId(driverId);
-        return ResponseEntity.ok(bookings);
+    public ResponseEntity<List<BookingSummary>> getDriverBookings(
+            @PathVariable String driverId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "" + Keyset.DEFAULT_PAGE_SIZE) int limit) {
+        List<BookingSummary> bookings = bookingService.getBookingsByDriverId(driverId, before, limit);
+        return Keyset.page(bookings, limit, BookingSummary::id);
     }
     
     @GetMapping("/driver/status")
     public ResponseEntity<?> getDriverStatus(@RequestParam String username) {
         log.info("Received request to get status for driver: {}", username);
-        Optional<User> userOpt = userRepository.findByUsername(username);
-        if (userOpt.isEmpty() || userOpt.get().getRole() != User.UserRole.DRIVER) {
+        // Served from the cache; polling does not reach the database
+        Optional<UserSummary> userOpt = userCache.findByUsername(username);
+        if (userOpt.isEmpty() || !userOpt.get().isDriver()) {
             log.warn("Driver not found or user is not a driver: {}", username);
             return ResponseEntity.notFound().build();
         }
-        log.info("Driver status retrieved successfully: {} - {}", username, userOpt.get().getStatus());
+        log.info("Driver status retrieved successfully: {} - {}", username, userOpt.get().status());
         return ResponseEntity.ok().body(
-            Map.of("status", userOpt.get().getStatus())
+            Map.of("status", userOpt.get().status())
         );
     }
 
@@ -326,11 +344,13 @@ public class BookingController {
     }
     
     @GetMapping("/available")
-    public ResponseEntity<List<Booking>> getAvailableBookings() {
+    public ResponseEntity<List<BookingSummary>> getAvailableBookings(
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "" + Keyset.DEFAULT_PAGE_SIZE) int limit) {
         try {
             // Get bookings that are in REQUESTED status (waiting for driver)
-            List<Booking> availableBookings = bookingService.getBookingsByStatus("REQUESTED");
-            return ResponseEntity.ok(availableBookings);
+            List<BookingSummary> availableBookings = bookingService.getBookingsByStatus("REQUESTED", before, limit);
+            return Keyset.page(availableBookings, limit, BookingSummary::id);
         } catch (Exception e) {
             log.error("Error getting available bookings", e);
             return ResponseEntity.ok(List.of());
@@ -1,7 +1,9 @@
 package com.taxi.booking.controller;
 
 import com.taxi.booking.model.User;
+import com.taxi.booking.model.UserSummary;
 import com.taxi.booking.repository.UserRepository;
+import com.taxi.booking.service.UserCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,18 +20,22 @@ public class DriverController {
     
     @Autowired
     private UserRepository userRepository;
+    
+    @Autowired
+    private UserCache userCache;
 
     @GetMapping("/status")
     public ResponseEntity<?> getDriverStatus(@RequestParam String username) {
         logger.info("Received request to get status for driver: {}", username);
-        Optional<User> userOpt = userRepository.findByUsername(username);
-        if (userOpt.isEmpty() || userOpt.get().getRole() != User.UserRole.DRIVER) {
+        // Served from the cache; polling does not reach the database
+        Optional<UserSummary> userOpt = userCache.findByUsername(username);
+        if (userOpt.isEmpty() || !userOpt.get().isDriver()) {
             logger.warn("Driver not found or user is not a driver: {}", username);
             return ResponseEntity.notFound().build();
         }
-        logger.info("Driver status retrieved successfully: {} - {}", username, userOpt.get().getStatus());
+        logger.info("Driver status retrieved successfully: {} - {}", username, userOpt.get().status());
         return ResponseEntity.ok().body(
-            java.util.Map.of("status", userOpt.get().getStatus())
+            java.util.Map.of("status", userOpt.get().status())
         );
     }
 
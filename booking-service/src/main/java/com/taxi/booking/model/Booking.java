@@ -8,14 +8,22 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "bookings")
+// Keyset pagination indexes: each list query is a range scan on (column, id); see BookingRepository
+@Table(name = "bookings", indexes = {
+    @Index(name = "idx_bookings_rider_id", columnList = "rider_id, id"),
+    @Index(name = "idx_bookings_driver_id", columnList = "driver_id, id"),
+    @Index(name = "idx_bookings_status", columnList = "status, id"),
+    @Index(name = "idx_bookings_created_at", columnList = "created_at")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Booking {
     
+    // Ids are handed out in blocks of 50 (pooled-lo), so inserts need no key round-trip and can be batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "booking_seq")
+    @SequenceGenerator(name = "booking_seq", sequenceName = "bookings_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false)
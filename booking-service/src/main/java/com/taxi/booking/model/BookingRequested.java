@@ -0,0 +1,59 @@
+package com.taxi.booking.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * booking-events payload: a booking waiting for a driver.
+ *
+ * Coordinates and fare are primitives so consumers read them without parsing strings or
+ * unboxing. Events written before versioning (v = 0) carried the pickup as a "lat,lng"
+ * string and could omit the fare fields; they are upgraded on read.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record BookingRequested(
+        int v,
+        long id,
+        String riderId,
+        double pickupLat,
+        double pickupLng,
+        String destination,
+        double distance,
+        double duration,
+        double price) {
+
+    public static final int VERSION = 1;
+
+    // Used when an unversioned event has no fare details
+    public static final double DEFAULT_DISTANCE_KM = 5.0;
+    public static final double DEFAULT_DURATION_MIN = 10.0;
+    public static final double DEFAULT_PRICE = 100.0;
+
+    public static BookingRequested of(long id, String riderId, double pickupLat, double pickupLng, String destination,
+                                      double distance, double duration, double price) {
+        return new BookingRequested(VERSION, id, riderId, pickupLat, pickupLng, destination, distance, duration, price);
+    }
+
+    @JsonCreator
+    static BookingRequested fromJson(@JsonProperty("v") int v,
+                                     @JsonProperty("id") long id,
+                                     @JsonProperty("riderId") String riderId,
+                                     @JsonProperty("pickupLat") double pickupLat,
+                                     @JsonProperty("pickupLng") double pickupLng,
+                                     @JsonProperty("destination") String destination,
+                                     @JsonProperty("distance") double distance,
+                                     @JsonProperty("duration") double duration,
+                                     @JsonProperty("price") double price,
+                                     @JsonProperty("pickupLocation") String pickupLocation) {
+        if (v >= VERSION) {
+            return new BookingRequested(v, id, riderId, pickupLat, pickupLng, destination, distance, duration, price);
+        }
+        String[] coords = pickupLocation.split(",");
+        return new BookingRequested(VERSION, id, riderId,
+                Double.parseDouble(coords[0].trim()), Double.parseDouble(coords[1].trim()), destination,
+                distance > 0 ? distance : DEFAULT_DISTANCE_KM,
+                duration > 0 ? duration : DEFAULT_DURATION_MIN,
+                price > 0 ? price : DEFAULT_PRICE);
+    }
+}
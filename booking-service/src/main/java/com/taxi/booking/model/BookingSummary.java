@@ -0,0 +1,22 @@
+package com.taxi.booking.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only view of a booking for list endpoints. Selected straight into this record by
+ * the repository, so listing does not create managed entities; it serialises to the same
+ * JSON as Booking.
+ */
+public record BookingSummary(
+        Long id,
+        String riderId,
+        String pickupLocation,
+        String destination,
+        String status,
+        String vehicleType,
+        Double distance,
+        Double price,
+        LocalDateTime createdAt,
+        String driverId,
+        String driverAssignmentStatus) {
+}
@@ -0,0 +1,17 @@
+package com.taxi.booking.model;
+
+/**
+ * Who a session token belongs to. Held by the session store instead of the User entity:
+ * a few immutable fields, no password and nothing tied to a persistence context. Taken
+ * at login, so a role or profile change applies from the user's next login.
+ */
+public record SessionPrincipal(Long id, String username, String email, User.UserRole role) {
+
+    public static SessionPrincipal of(User user) {
+        return new SessionPrincipal(user.getId(), user.getUsername(), user.getEmail(), user.getRole());
+    }
+
+    public boolean isAdmin() {
+        return role == User.UserRole.ADMIN;
+    }
+}
@@ -0,0 +1,25 @@
+package com.taxi.booking.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only view of a user for the admin lists: every field but the password. Selected
+ * straight into this record by the repository, so listing does not create managed
+ * entities or load password hashes.
+ */
+public record UserProfile(
+        Long id,
+        String username,
+        String email,
+        User.UserRole role,
+        String phoneNumber,
+        User.Status status,
+        User.VehicleType vehicleType,
+        String licenseNumber,
+        LocalDateTime createdAt) {
+
+    public static UserProfile of(User user) {
+        return new UserProfile(user.getId(), user.getUsername(), user.getEmail(), user.getRole(), user.getPhoneNumber(),
+                user.getStatus(), user.getVehicleType(), user.getLicenseNumber(), user.getCreatedAt());
+    }
+}
@@ -0,0 +1,16 @@
+package com.taxi.booking.model;
+
+/**
+ * The fields of a user that status checks need, selected straight into this record by
+ * the repository and held by UserCache in place of the entity.
+ */
+public record UserSummary(Long id, String username, User.UserRole role, User.Status status, User.VehicleType vehicleType) {
+
+    public static UserSummary of(User user) {
+        return new UserSummary(user.getId(), user.getUsername(), user.getRole(), user.getStatus(), user.getVehicleType());
+    }
+
+    public boolean isDriver() {
+        return role == User.UserRole.DRIVER;
+    }
+}
@@ -2,80 +2,99 @@ package com.taxi.booking.producer;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.taxi.booking.model.Booking;
+import com.taxi.booking.model.BookingRequested;
+import com.taxi.booking.model.OutboxEvent;
+import com.taxi.booking.repository.OutboxEventRepository;
+import com.taxi.booking.util.DistanceCalculator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+/**
+ * Publishes booking events for Kafka-based driver matching.
+ *
+ * Events are keyed by the shard region of the pickup (see RegionPartitioner), so every
+ * booking from one region lands on the partition whose matcher holds that region's drivers.
+ * They are not sent from here: each event is written to the outbox table in the caller's
+ * transaction and OutboxRelay publishes it after commit, so request latency does not depend
+ * on the broker and a committed booking is never lost to a failed send.
+ */
 @Component
 public class BookingProducer {
     
     private static final Logger log = LoggerFactory.getLogger(BookingProducer.class);
     
     private final KafkaTemplate<String, String> kafkaTemplate;
-    private final ObjectMapper objectMapper;
+    private final ObjectWriter eventWriter;
+    
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+    
+    @Value("${app.kafka.topic:booking-events}")
+    private String topic = "booking-events";
     
     // Default constructor for Spring
     public BookingProducer() {
         this.kafkaTemplate = null;
-        this.objectMapper = new ObjectMapper();
+        this.eventWriter = new ObjectMapper().writerFor(BookingRequested.class);
         log.info("BookingProducer initialized without Kafka support");
     }
     
     @Autowired(required = false)
     public BookingProducer(KafkaTemplate<String, String> kafkaTemplate, ObjectMapper objectMapper) {
         this.kafkaTemplate = kafkaTemplate;
-        this.objectMapper = objectMapper;
+        this.eventWriter = objectMapper.writerFor(BookingRequested.class);
         log.info("BookingProducer initialized with Kafka support: {}", kafkaTemplate != null);
     }
     
     public void sendBookingEvent(Booking booking) {
-        try {
-            String json = objectMapper.writeValueAsString(booking);
-            
-            if (kafkaTemplate != null) {
-                kafkaTemplate.send("booking-events", json);
-                log.info("Sent booking event to Kafka: {}", json);
-            } else {
-                log.info("Kafka not available. Booking event logged: {}", json);
-            }
-        } catch (JsonProcessingException e) {
-            log.error("Error serializing booking to JSON", e);
-        } catch (Exception e) {
-            log.warn("Failed to send to Kafka (this is normal if Kafka is not running): {}", e.getMessage());
-            log.info("Booking event processed locally: {}", booking);
-        }
+        // The entity has no duration; distance and price are set once the fare is quoted
+        sendBookingEventWithDetails(booking,
+                booking.getDistance() != null ? booking.getDistance() : BookingRequested.DEFAULT_DISTANCE_KM,
+                BookingRequested.DEFAULT_DURATION_MIN,
+                booking.getPrice() != null ? booking.getPrice() : BookingRequested.DEFAULT_PRICE);
     }
     
     public void sendBookingEventWithDetails(Booking booking, double distance, double duration, double price) {
+        double[] pickup = DistanceCalculator.parseLocation(booking.getPickupLocation());
+        if (pickup == null) {
+            log.error("Booking {} has an invalid pickup location '{}', not publishing it", booking.getId(), booking.getPickupLocation());
+            return;
+        }
         try {
-            // Create enhanced booking event with additional details
-            java.util.Map<String, Object> enhancedBooking = new java.util.HashMap<>();
-            enhancedBooking.put("id", booking.getId());
-            enhancedBooking.put("riderId", booking.getRiderId());
-            enhancedBooking.put("pickupLocation", booking.getPickupLocation());
-            enhancedBooking.put("destination", booking.getDestination());
-            enhancedBooking.put("status", booking.getStatus());
-            enhancedBooking.put("createdAt", booking.getCreatedAt());
-            enhancedBooking.put("distance", distance);
-            enhancedBooking.put("duration", duration);
-            enhancedBooking.put("price", price);
-            
-            String json = objectMapper.writeValueAsString(enhancedBooking);
-            
-            if (kafkaTemplate != null) {
-                kafkaTemplate.send("booking-events", json);
-                log.info("Sent enhanced booking event to Kafka: {}", json);
-            } else {
-                log.info("Kafka not available. Enhanced booking event logged: {}", json);
-            }
+            BookingRequested event = BookingRequested.of(booking.getId(), booking.getRiderId(), pickup[0], pickup[1],
+                    booking.getDestination(), distance, duration, price);
+            enqueue(RegionPartitioner.region(pickup[0], pickup[1]), eventWriter.writeValueAsString(event), booking.getId());
         } catch (JsonProcessingException e) {
-            log.error("Error serializing enhanced booking to JSON", e);
-        } catch (Exception e) {
-            log.warn("Failed to send enhanced booking to Kafka (this is normal if Kafka is not running): {}", e.getMessage());
-            log.info("Enhanced booking event processed locally: {}", booking);
+            log.error("Error serializing booking event to JSON", e);
+        }
+    }
+    
+    /**
+     * Same as sendBookingEventWithDetails, in a transaction of its own. For callers running
+     * after their transaction has committed, where joining it would lose the outbox row.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void sendBookingEventInNewTransaction(Booking booking, double distance, double duration, double price) {
+        sendBookingEventWithDetails(booking, distance, duration, price);
+    }
+    
+    /**
+     * Write the event to the outbox; joins the caller's transaction if there is one
+     */
+    private void enqueue(String key, String json, Long bookingId) {
+        if (kafkaTemplate == null) {
+            log.info("Kafka not available. Booking event logged: {}", json);
+            return;
         }
+        outboxEventRepository.save(new OutboxEvent(topic, key, bookingId, json));
+        log.debug("Queued booking event {} in the outbox (key: {})", bookingId, key);
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,157 @@
+package com.taxi.booking.producer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taxi.booking.model.DriverLocation;
+import com.taxi.booking.service.DriverPresenceRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Publishes driver locations to the driver-locations topic for the sharded matchers.
+ *
+ * Pings are coalesced: only each driver's latest location is sent, once per publish
+ * interval. Records are keyed "region/driverId", so RegionPartitioner routes a driver to
+ * its region's shard. A driver within the border margin of neighbouring regions is also
+ * published under each of them, so their shards can match it to bookings just across the
+ * border. When a driver leaves a region (or its margin) a tombstone is written under that
+ * region's key, so the shard drops the driver and compaction can remove it.
+ *
+ * Only drivers DriverPresenceRegistry counts as available are published. A driver this
+ * instance published that goes offline, disconnects, takes a ride or expires gets a
+ * tombstone under each of its last keys, so the matchers stop assigning it and compaction removes
+ * it from the topic. Every send happens on the flush thread, so a tombstone is never
+ * overtaken by an older location.
+ */
+@Component
+public class DriverLocationProducer {
+
+    private static final Logger log = LoggerFactory.getLogger(DriverLocationProducer.class);
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.kafka.driver-location-topic:driver-locations}")
+    private String topic = "driver-locations";
+
+    @Value("${app.kafka.region-border-km:10}")
+    private double regionBorderKm = 10;
+
+    // Driver ID -> latest location not yet published
+    private final Map<String, DriverLocation> pending = new ConcurrentHashMap<>();
+
+    // Driver ID -> regions of the last location this instance published
+    private final Map<String, Set<String>> publishedRegions = new ConcurrentHashMap<>();
+
+    // Driver ID -> regions it was published under before this instance started, read from the topic
+    private final Map<String, Set<String>> seededRegions = new ConcurrentHashMap<>();
+
+    // Drivers no longer available, to be tombstoned on the next flush
+    private final Set<String> retired = ConcurrentHashMap.newKeySet();
+
+    private DriverPresenceRegistry presenceRegistry;
+
+    public DriverLocationProducer(@Autowired(required = false) KafkaTemplate<String, String> kafkaTemplate, ObjectMapper objectMapper) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @Autowired
+    public void setPresenceRegistry(DriverPresenceRegistry presenceRegistry) {
+        this.presenceRegistry = presenceRegistry;
+        presenceRegistry.addListener((driverId, previous, current) -> {
+            if (!DriverPresenceRegistry.AVAILABLE.test(current)) {
+                retire(driverId);
+            }
+        });
+    }
+
+    public void publish(DriverLocation location) {
+        if (kafkaTemplate != null) {
+            pending.put(location.getDriverId(), location);
+        }
+    }
+
+    /**
+     * Record the regions a driver was last published under before this instance started,
+     * so its first move out of them still writes tombstones
+     */
+    public void seedPublishedRegions(String driverId, Set<String> regions) {
+        seededRegions.putIfAbsent(driverId, regions);
+    }
+
+    /**
+     * Tombstone locations left on the topic from before this instance started, unless
+     * the driver is available again by the next flush
+     */
+    public void retire(String driverId, Set<String> regions) {
+        if (kafkaTemplate != null) {
+            publishedRegions.putIfAbsent(driverId, regions);
+            retire(driverId);
+        }
+    }
+
+    /**
+     * Take a driver this instance published off the topic: its pending location is dropped
+     * and, unless it is available again by then, a tombstone is written on the next flush
+     */
+    public void retire(String driverId) {
+        if (kafkaTemplate != null) {
+            pending.remove(driverId);
+            retired.add(driverId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.kafka.location-publish-interval-ms:1000}")
+    public void flush() {
+        for (String driverId : pending.keySet()) {
+            DriverLocation location = pending.remove(driverId);
+            if (location == null || !presenceRegistry.isAvailable(driverId)) {
+                continue;
+            }
+            try {
+                Set<String> regions = RegionPartitioner.regions(location.getLat(), location.getLng(), regionBorderKm);
+                Set<String> previous = publishedRegions.put(driverId, regions);
+                Set<String> seeded = seededRegions.remove(driverId);
+                if (previous == null) {
+                    previous = seeded;
+                }
+                if (previous != null) {
+                    for (String left : previous) {
+                        if (!regions.contains(left)) {
+                            kafkaTemplate.send(topic, RegionPartitioner.key(left, driverId), null);
+                        }
+                    }
+                }
+                String value = objectMapper.writeValueAsString(location);
+                for (String region : regions) {
+                    kafkaTemplate.send(topic, RegionPartitioner.key(region, driverId), value);
+                }
+            } catch (Exception e) {
+                log.warn("Failed to publish location of driver {}: {}", driverId, e.getMessage());
+            }
+        }
+
+        // After the locations, so a driver retired since its location was queued ends on a tombstone
+        for (String driverId : retired) {
+            retired.remove(driverId);
+            if (presenceRegistry.isAvailable(driverId)) {
+                continue; // back already; its next location replaces the old one
+            }
+            Set<String> regions = publishedRegions.remove(driverId);
+            if (regions != null) {
+                for (String region : regions) {
+                    kafkaTemplate.send(topic, RegionPartitioner.key(region, driverId), null);
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,175 @@
+package com.taxi.booking.producer;
+
+import com.taxi.booking.model.OutboxEvent;
+import com.taxi.booking.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the outbox table to Kafka in the background.
+ *
+ * Only one instance relays at a time: a pass first takes a Postgres session advisory
+ * lock (pg_try_advisory_lock) and is skipped if another instance holds it, so events go
+ * out in id order from a single producer. The lock is held on its own connection for
+ * the pass; no transaction or row lock stays open while acknowledgements are awaited.
+ *
+ * Each batch reads the oldest pending events, sends them without waiting in between
+ * (the producer groups them into broker batches), waits for the acknowledgements and
+ * deletes the acknowledged prefix in a short transaction of its own. An event that fails
+ * ends the pass and is never deleted; it and everything after it, acknowledged or not,
+ * is sent again on the next pass. So a key's events may be delivered again, but the
+ * newest event of every key is always the last one delivered for it.
+ *
+ * Delivery is at-least-once: an event whose acknowledgement times out, or whose relay
+ * dies between send and delete, is sent again. Ids come from per-instance blocks, so id
+ * order is creation order within an instance.
+ */
+@Component
+@ConditionalOnProperty(name = "app.kafka.enabled", havingValue = "true", matchIfMissing = false)
+public class OutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private static final long ACK_TIMEOUT_SECONDS = 30;
+
+    // Advisory lock key held by the instance currently relaying ("outbox" in ASCII)
+    private static final long RELAY_LOCK_KEY = 0x6f7574626f78L;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final DataSource dataSource;
+
+    @Value("${app.outbox.batch-size:500}")
+    private int batchSize = 500;
+
+    // Age of the oldest event still waiting at the last pass, in millis
+    private final AtomicLong lagMillis = new AtomicLong();
+
+    private Counter relayedCounter;
+    private Counter failedCounter;
+    private Timer batchTimer;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository, KafkaTemplate<String, String> kafkaTemplate,
+                       DataSource dataSource) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.dataSource = dataSource;
+    }
+
+    @Autowired(required = false)
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        meterRegistry.gauge("booking.outbox.lag.seconds", lagMillis, lag -> lag.get() / 1000.0);
+        this.relayedCounter = meterRegistry.counter("booking.outbox.events", "result", "relayed");
+        this.failedCounter = meterRegistry.counter("booking.outbox.events", "result", "failed");
+        this.batchTimer = Timer.builder("booking.outbox.batch.latency")
+                .description("Time to send one outbox batch and receive its acknowledgements")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval-ms:100}")
+    public void relay() {
+        // The lock belongs to this connection's session, so the connection is kept for the whole pass
+        try (Connection lockConnection = dataSource.getConnection()) {
+            if (!advisoryLock(lockConnection, "pg_try_advisory_lock")) {
+                return; // another instance is relaying
+            }
+            try {
+                // Keep going while batches come back full, so a backlog drains without waiting for the next tick
+                while (relayBatch() == batchSize) {
+                    // next batch
+                }
+            } finally {
+                unlock(lockConnection);
+            }
+        } catch (Exception e) {
+            log.warn("Outbox relay pass failed: {}", e.getMessage());
+        }
+    }
+
+    // A pooled connection that kept the lock would stop every other instance relaying; close it instead
+    private static void unlock(Connection connection) throws SQLException {
+        try {
+            if (advisoryLock(connection, "pg_advisory_unlock")) {
+                return;
+            }
+        } catch (SQLException e) {
+            log.warn("Could not release the outbox relay lock: {}", e.getMessage());
+        }
+        connection.abort(Runnable::run);
+    }
+
+    private static boolean advisoryLock(Connection connection, String function) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT " + function + "(?)")) {
+            statement.setLong(1, RELAY_LOCK_KEY);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() && result.getBoolean(1);
+            }
+        }
+    }
+
+    /**
+     * @return size of the batch if all of it was delivered, otherwise 0 to end the pass
+     */
+    private int relayBatch() {
+        List<OutboxEvent> batch = outboxEventRepository.findByOrderByIdAsc(Limit.of(batchSize));
+        if (batch.isEmpty()) {
+            lagMillis.set(0);
+            return 0;
+        }
+        lagMillis.set(Duration.between(batch.get(0).getCreatedAt(), LocalDateTime.now()).toMillis());
+
+        long start = System.nanoTime();
+        List<CompletableFuture<SendResult<String, String>>> acks = new ArrayList<>(batch.size());
+        for (OutboxEvent event : batch) {
+            acks.add(kafkaTemplate.send(event.getTopic(), event.getEventKey(), event.getPayload()));
+        }
+
+        List<Long> delivered = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                acks.get(i).get(ACK_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                delivered.add(batch.get(i).getId());
+            } catch (Exception e) {
+                log.warn("Outbox event {} for booking {} not acknowledged, retrying from it next pass: {}",
+                        batch.get(i).getId(), batch.get(i).getAggregateId(), e.getMessage());
+                break;
+            }
+        }
+
+        if (!delivered.isEmpty()) {
+            outboxEventRepository.deleteAllByIdInBatch(delivered);
+        }
+        if (relayedCounter != null) {
+            relayedCounter.increment(delivered.size());
+            failedCounter.increment(batch.size() - delivered.size());
+            batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        log.debug("Relayed {}/{} outbox events", delivered.size(), batch.size());
+        return delivered.size() == batch.size() ? batch.size() : 0;
+    }
+}
\ No newline at end of file
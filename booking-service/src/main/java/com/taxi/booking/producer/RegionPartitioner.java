@@ -0,0 +1,110 @@
+package com.taxi.booking.producer;
+
+import com.taxi.booking.util.GeohashUtils;
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.utils.Utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Kafka partitioner that shards by geohash region.
+ *
+ * Keys are either a bare region ("tepg", booking events) or "region/id" (driver locations,
+ * whose key must stay unique per driver for compaction). Only the region part is hashed, so
+ * every record about one region lands on the same partition number in each topic. With the
+ * topics created with the same partition count, the matcher that owns partition n of
+ * booking-events also receives partition n of driver-locations: exactly the drivers it needs.
+ *
+ * A driver near a region border is published under each region within the border margin
+ * (see regions), so a booking just inside one region still sees drivers a little way into
+ * the next one in its own shard.
+ *
+ * Configured through spring.kafka.producer.properties.partitioner.class.
+ */
+public class RegionPartitioner implements Partitioner {
+
+    // ~39km x 20km cells: a whole city, or a large slice of a big one, so most matches stay inside one shard
+    public static final int REGION_PRECISION = 4;
+
+    private static final char REGION_SEPARATOR = '/';
+
+    private static final double KM_PER_DEGREE_LAT = 111.32;
+
+    /**
+     * The shard region containing a point
+     */
+    public static String region(double lat, double lng) {
+        return GeohashUtils.encode(lat, lng, REGION_PRECISION);
+    }
+
+    /**
+     * The point's own region, first, and every neighbouring region whose border lies within
+     * marginKm of it. The margin must stay below a region's height (~20km) for no region
+     * to be skipped.
+     */
+    public static Set<String> regions(double lat, double lng, double marginKm) {
+        Set<String> regions = new LinkedHashSet<>();
+        regions.add(region(lat, lng));
+        double dLat = marginKm / KM_PER_DEGREE_LAT;
+        double dLng = dLat / Math.max(Math.cos(Math.toRadians(lat)), 0.01);
+        for (int row = -1; row <= 1; row++) {
+            for (int col = -1; col <= 1; col++) {
+                double neighbourLat = Math.max(-90, Math.min(90, lat + row * dLat));
+                double neighbourLng = lng + col * dLng;
+                if (neighbourLng > 180) {
+                    neighbourLng -= 360;
+                } else if (neighbourLng < -180) {
+                    neighbourLng += 360;
+                }
+                regions.add(region(neighbourLat, neighbourLng));
+            }
+        }
+        return regions;
+    }
+
+    /**
+     * Key for a record about one entity in a region, e.g. a driver's location
+     */
+    public static String key(String region, String id) {
+        return region + REGION_SEPARATOR + id;
+    }
+
+    /**
+     * Region part of a record key
+     */
+    public static String regionOf(String key) {
+        int separator = key.indexOf(REGION_SEPARATOR);
+        return separator >= 0 ? key.substring(0, separator) : key;
+    }
+
+    /**
+     * Entity part of a "region/id" key, or null for a bare region key
+     */
+    public static String idOf(String key) {
+        int separator = key.indexOf(REGION_SEPARATOR);
+        return separator >= 0 ? key.substring(separator + 1) : null;
+    }
+
+    @Override
+    public int partition(String topic, Object key, byte[] keyBytes, Object value, byte[] valueBytes, Cluster cluster) {
+        int partitions = cluster.partitionCountForTopic(topic);
+        if (key == null) {
+            return ThreadLocalRandom.current().nextInt(partitions);
+        }
+        String region = regionOf(key.toString());
+        return Utils.toPositive(Utils.murmur2(region.getBytes(StandardCharsets.UTF_8))) % partitions;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+    }
+
+    @Override
+    public void close() {
+    }
+}
\ No newline at end of file
@@ -1,7 +1,10 @@
 package com.taxi.booking.repository;
 
 import com.taxi.booking.model.Booking;
+import com.taxi.booking.model.BookingSummary;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -12,11 +15,19 @@ import java.util.List;
 @Repository
 public interface BookingRepository extends JpaRepository<Booking, Long> {
     
-    List<Booking> findByRiderId(String riderId);
+    // Keyset pages, newest first: pass the last id of the previous page as the upper bound.
+    // Each is a range scan on one of the (column, id) indexes in database-migration.sql.
     
-    List<Booking> findByStatus(String status);
+    List<BookingSummary> findByIdLessThanOrderByIdDesc(Long before, Limit limit);
     
-    List<Booking> findByDriverId(String driverId);
+    List<BookingSummary> findByRiderIdAndIdLessThanOrderByIdDesc(String riderId, Long before, Limit limit);
+    
+    List<BookingSummary> findByDriverIdAndIdLessThanOrderByIdDesc(String driverId, Long before, Limit limit);
+    
+    List<BookingSummary> findByStatusAndIdLessThanOrderByIdDesc(String status, Long before, Limit limit);
+    
+    @Query("SELECT b.status FROM Booking b WHERE b.id = :id")
+    String findStatusById(@Param("id") Long id);
     
     long countByStatus(String status);
     
@@ -24,4 +35,31 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
     
     @Query("SELECT SUM(b.price) FROM Booking b WHERE b.status = :status")
     Double sumPriceByStatus(@Param("status") String status);
-} 
\ No newline at end of file
+    
+    /**
+     * One row per status: status, count, sum of prices. Used to reconcile the admin stats.
+     */
+    @Query("SELECT b.status, COUNT(b), SUM(b.price) FROM Booking b GROUP BY b.status")
+    List<Object[]> countAndSumPriceGroupByStatus();
+    
+    /**
+     * Assign the driver only if the booking is still in the given open status: REQUESTED,
+     * or ASSIGNED to this driver by Kafka matching. A single conditional UPDATE, so
+     * concurrent accepts are serialised by the row lock and exactly one of them sees 1.
+     * One status per call, so the caller knows which transition it made.
+     * @return number of rows updated, 0 if another driver got there first
+     */
+    @Modifying
+    @Query("UPDATE Booking b SET b.driverId = :driverId, b.status = 'ACCEPTED' " +
+           "WHERE b.id = :id AND b.status = :status AND (b.status = 'REQUESTED' OR b.driverId = :driverId)")
+    int acceptIfStatus(@Param("id") Long id, @Param("driverId") String driverId, @Param("status") String status);
+    
+    /**
+     * Mark the booking REJECTED if it is still in the given open status: REQUESTED, or
+     * ASSIGNED to this driver, as for acceptIfStatus
+     */
+    @Modifying
+    @Query("UPDATE Booking b SET b.status = 'REJECTED' " +
+           "WHERE b.id = :id AND b.status = :status AND (b.status = 'REQUESTED' OR b.driverId = :driverId)")
+    int rejectIfStatus(@Param("id") Long id, @Param("driverId") String driverId, @Param("status") String status);
+}
\ No newline at end of file
@@ -0,0 +1,17 @@
+package com.taxi.booking.repository;
+
+import com.taxi.booking.model.OutboxEvent;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Oldest pending events first, i.e. in commit order per key
+     */
+    List<OutboxEvent> findByOrderByIdAsc(Limit limit);
+}
\ No newline at end of file
@@ -1,6 +1,9 @@
 package com.taxi.booking.repository;
 
 import com.taxi.booking.model.User;
+import com.taxi.booking.model.UserProfile;
+import com.taxi.booking.model.UserSummary;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -13,15 +16,24 @@ public interface UserRepository extends JpaRepository<User, Long> {
     
     Optional<User> findByUsername(String username);
     
+    Optional<UserSummary> findSummaryByUsername(String username);
+    
     Optional<User> findByEmail(String email);
     
     boolean existsByUsername(String username);
     
     boolean existsByEmail(String email);
     
-    List<User> findByRole(User.UserRole role);
+    // Keyset page, newest first
+    List<UserProfile> findProfilesByRoleAndIdLessThanOrderByIdDesc(User.UserRole role, Long before, Limit limit);
     
     long countByRole(User.UserRole role);
     
     long countByRoleAndStatus(User.UserRole role, User.Status status);
+    
+    /**
+     * One row per role and status: role, status, count. Used to reconcile the admin stats.
+     */
+    @Query("SELECT u.role, u.status, COUNT(u) FROM User u GROUP BY u.role, u.status")
+    List<Object[]> countGroupByRoleAndStatus();
 } 
\ No newline at end of file
@@ -0,0 +1,207 @@
+package com.taxi.booking.service;
+
+import com.taxi.booking.model.User;
+import com.taxi.booking.repository.BookingRepository;
+import com.taxi.booking.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory admin dashboard counters.
+ *
+ * Kept current from booking and user state transitions: entity inserts and updates arrive
+ * through StatsEntityListener after commit, and BookingService reports the transitions it
+ * makes with bulk UPDATEs. Bookings are also counted per day of creation, keeping the last
+ * few days, so "today" rolls over at midnight without a query.
+ *
+ * reconcile() replaces every counter with the database's values on a schedule, correcting
+ * any drift; a transition that lands while it runs can be off by one until the next pass.
+ */
+@Service
+public class AdminStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(AdminStatsService.class);
+
+    // Today plus a few days back, for transitions that arrive around midnight
+    private static final int DAYS_KEPT = 3;
+
+    // Counted in place of a null booking status, which a ConcurrentHashMap cannot hold as a key
+    private static final String UNKNOWN_STATUS = "UNKNOWN";
+
+    private final BookingRepository bookingRepository;
+    private final UserRepository userRepository;
+
+    private record UserKey(User.UserRole role, User.Status status) {
+    }
+
+    // Booking status -> number of bookings
+    private final Map<String, AtomicLong> bookingsByStatus = new ConcurrentHashMap<>();
+
+    // Day of creation -> bookings created that day
+    private final Map<LocalDate, AtomicLong> bookingsByDay = new ConcurrentHashMap<>();
+
+    // Sum of COMPLETED booking prices, in paise so it can be updated atomically
+    private final AtomicLong completedRevenuePaise = new AtomicLong();
+
+    // Role and status -> number of users
+    private final Map<UserKey, AtomicLong> usersByRoleAndStatus = new ConcurrentHashMap<>();
+
+    private volatile LocalDateTime lastReconciled;
+
+    public AdminStatsService(BookingRepository bookingRepository, UserRepository userRepository) {
+        this.bookingRepository = bookingRepository;
+        this.userRepository = userRepository;
+    }
+
+    public void bookingCreated(String status, Double price, LocalDateTime createdAt) {
+        counter(bookingsByStatus, statusKey(status)).incrementAndGet();
+        if (createdAt != null) {
+            counter(bookingsByDay, createdAt.toLocalDate()).incrementAndGet();
+        }
+        if ("COMPLETED".equals(status)) {
+            completedRevenuePaise.addAndGet(paise(price));
+        }
+    }
+
+    public void bookingStatusChanged(String from, String to, Double price) {
+        if (Objects.equals(from, to)) {
+            return;
+        }
+        counter(bookingsByStatus, statusKey(from)).decrementAndGet();
+        counter(bookingsByStatus, statusKey(to)).incrementAndGet();
+        if ("COMPLETED".equals(to)) {
+            completedRevenuePaise.addAndGet(paise(price));
+        } else if ("COMPLETED".equals(from)) {
+            completedRevenuePaise.addAndGet(-paise(price));
+        }
+    }
+
+    public void userCreated(User.UserRole role, User.Status status) {
+        counter(usersByRoleAndStatus, new UserKey(role, status)).incrementAndGet();
+    }
+
+    public void userChanged(User.UserRole oldRole, User.Status oldStatus, User.UserRole role, User.Status status) {
+        if (oldRole == role && oldStatus == status) {
+            return;
+        }
+        counter(usersByRoleAndStatus, new UserKey(oldRole, oldStatus)).decrementAndGet();
+        counter(usersByRoleAndStatus, new UserKey(role, status)).incrementAndGet();
+    }
+
+    /**
+     * Current dashboard figures; a handful of map reads, independent of table sizes
+     */
+    public Map<String, Object> snapshot() {
+        long totalUsers = 0;
+        long totalDrivers = 0;
+        long totalRiders = 0;
+        long activeDrivers = 0;
+        for (Map.Entry<UserKey, AtomicLong> entry : usersByRoleAndStatus.entrySet()) {
+            long count = entry.getValue().get();
+            totalUsers += count;
+            if (entry.getKey().role() == User.UserRole.DRIVER) {
+                totalDrivers += count;
+                if (entry.getKey().status() == User.Status.ONLINE) {
+                    activeDrivers += count;
+                }
+            } else if (entry.getKey().role() == User.UserRole.RIDER) {
+                totalRiders += count;
+            }
+        }
+
+        long totalBookings = 0;
+        for (AtomicLong count : bookingsByStatus.values()) {
+            totalBookings += count.get();
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalUsers", totalUsers);
+        stats.put("totalDrivers", totalDrivers);
+        stats.put("activeDrivers", activeDrivers);
+        stats.put("totalRiders", totalRiders);
+        stats.put("totalBookings", totalBookings);
+        stats.put("todayBookings", count(bookingsByDay, LocalDate.now()));
+        stats.put("completedBookings", count(bookingsByStatus, "COMPLETED"));
+        stats.put("pendingBookings", count(bookingsByStatus, "REQUESTED"));
+        stats.put("totalRevenue", completedRevenuePaise.get() / 100.0);
+        stats.put("lastReconciled", lastReconciled);
+        return stats;
+    }
+
+    /**
+     * Reset every counter from the database: two GROUP BY scans and one indexed count
+     */
+    @Scheduled(fixedDelayString = "${app.stats.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        try {
+            long start = System.nanoTime();
+
+            Set<String> statuses = new HashSet<>();
+            long revenuePaise = 0;
+            for (Object[] row : bookingRepository.countAndSumPriceGroupByStatus()) {
+                String status = statusKey((String) row[0]);
+                statuses.add(status);
+                counter(bookingsByStatus, status).set((Long) row[1]);
+                if ("COMPLETED".equals(status)) {
+                    revenuePaise = paise((Double) row[2]);
+                }
+            }
+            bookingsByStatus.forEach((status, count) -> {
+                if (!statuses.contains(status)) {
+                    count.set(0);
+                }
+            });
+            completedRevenuePaise.set(revenuePaise);
+
+            LocalDate today = LocalDate.now();
+            counter(bookingsByDay, today).set(bookingRepository.countByCreatedAtAfter(today.atStartOfDay()));
+            bookingsByDay.keySet().removeIf(day -> day.isBefore(today.minusDays(DAYS_KEPT - 1)));
+
+            Set<UserKey> keys = new HashSet<>();
+            for (Object[] row : userRepository.countGroupByRoleAndStatus()) {
+                UserKey key = new UserKey((User.UserRole) row[0], (User.Status) row[1]);
+                keys.add(key);
+                counter(usersByRoleAndStatus, key).set((Long) row[2]);
+            }
+            usersByRoleAndStatus.forEach((key, count) -> {
+                if (!keys.contains(key)) {
+                    count.set(0);
+                }
+            });
+
+            lastReconciled = LocalDateTime.now();
+            log.debug("Reconciled admin stats in {} ms", (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            log.error("Admin stats reconciliation failed", e);
+        }
+    }
+
+    private static String statusKey(String status) {
+        return status != null ? status : UNKNOWN_STATUS;
+    }
+
+    private static <K> AtomicLong counter(Map<K, AtomicLong> counters, K key) {
+        return counters.computeIfAbsent(key, k -> new AtomicLong());
+    }
+
+    private static <K> long count(Map<K, AtomicLong> counters, K key) {
+        AtomicLong count = counters.get(key);
+        return count != null ? count.get() : 0;
+    }
+
+    private static long paise(Double price) {
+        return price != null ? Math.round(price * 100) : 0;
+    }
+}
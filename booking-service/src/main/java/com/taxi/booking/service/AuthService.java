@@ -1,10 +1,20 @@
 package com.taxi.booking.service;
 
+import com.taxi.booking.model.SessionPrincipal;
 import com.taxi.booking.model.User;
 import com.taxi.booking.repository.UserRepository;
+import com.taxi.booking.util.ExpiringCache;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -12,11 +22,34 @@ import java.util.Optional;
 @Service
 public class AuthService {
     
+    private static final Logger log = LoggerFactory.getLogger(AuthService.class);
+    
+    private static final int TOKEN_BYTES = 32;
+    
     @Autowired
     private UserRepository userRepository;
     
-    // Simple in-memory session storage (in production, use Redis or JWT)
-    private final Map<String, User> activeSessions = new HashMap<>();
+    @Autowired
+    private UserCache userCache;
+    
+    @Value("${app.auth.session-ttl-minutes:720}")
+    private long sessionTtlMinutes;
+    
+    @Value("${app.auth.session-idle-minutes:60}")
+    private long sessionIdleMinutes;
+    
+    @Value("${app.auth.max-sessions:100000}")
+    private int maxSessions;
+    
+    private final SecureRandom tokenRandom = new SecureRandom();
+    
+    // In-memory session storage: token -> principal, expiring after the TTL or when idle (in production, use Redis or JWT)
+    private ExpiringCache<String, SessionPrincipal> activeSessions;
+    
+    @PostConstruct
+    public void initSessions() {
+        activeSessions = new ExpiringCache<>(Duration.ofMinutes(sessionTtlMinutes), Duration.ofMinutes(sessionIdleMinutes), maxSessions);
+    }
     
     public Map<String, Object> register(String username, String email, String password, User.UserRole role, String phoneNumber, String vehicleTypeStr, String licenseNumber) {
         Map<String, Object> response = new HashMap<>();
@@ -102,9 +135,11 @@ public class AuthService {
                 return response;
             }
             
-            // Generate session token (in production, use JWT)
-            String sessionToken = "session_" + System.currentTimeMillis() + "_" + user.getId();
-            activeSessions.put(sessionToken, user);
+            // Unguessable session token (in production, use JWT)
+            String sessionToken = newSessionToken();
+            activeSessions.put(sessionToken, SessionPrincipal.of(user));
+            // Warm the cache for the status polling that follows a driver's login
+            userCache.put(user);
             
             response.put("success", true);
             response.put("message", "Login successful");
@@ -138,11 +173,28 @@ public class AuthService {
         return response;
     }
     
-    public User getCurrentUser(String sessionToken) {
-        return activeSessions.get(sessionToken);
+    /**
+     * @return the session's principal, or null if the token is unknown or expired
+     */
+    public SessionPrincipal getCurrentUser(String sessionToken) {
+        return sessionToken != null ? activeSessions.get(sessionToken) : null;
     }
     
     public boolean isAuthenticated(String sessionToken) {
-        return activeSessions.containsKey(sessionToken);
+        return getCurrentUser(sessionToken) != null;
+    }
+    
+    @Scheduled(fixedDelayString = "${app.auth.session-sweep-interval-ms:60000}")
+    public void purgeExpiredSessions() {
+        int purged = activeSessions.purgeExpired();
+        if (purged > 0) {
+            log.debug("Purged {} expired sessions, {} remain", purged, activeSessions.size());
+        }
+    }
+    
+    private String newSessionToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        tokenRandom.nextBytes(bytes);
+        return "session_" + Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
     }
 } 
\ No newline at end of file
@@ -1,23 +1,45 @@
 package com.taxi.booking.service;
 
 import com.taxi.booking.model.Booking;
+import com.taxi.booking.model.BookingSummary;
+import com.taxi.booking.model.DriverAssigned;
 import com.taxi.booking.producer.BookingProducer;
 import com.taxi.booking.repository.BookingRepository;
+import com.taxi.booking.util.Keyset;
+import com.taxi.booking.websocket.AdminDashboardWebSocketHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class BookingService {
     
     private static final Logger log = LoggerFactory.getLogger(BookingService.class);
     
+    // Only bookings still waiting for a driver (REQUESTED or ASSIGNED); an acceptance or cancellation is never overwritten
+    private static final String ASSIGN_SQL = "UPDATE bookings SET driver_id = ?, status = ?, driver_assignment_status = 'PENDING' "
+            + "WHERE id = ? AND status = ?";
+    
+    // Open statuses in the order the conditional updates try them
+    private static final List<String> OPEN_STATUSES = List.of("REQUESTED", "ASSIGNED");
+    
     private final BookingRepository bookingRepository;
     private final BookingProducer bookingProducer;
     
@@ -27,6 +49,18 @@ public class BookingService {
     @Autowired
     private GeoMatchingService geoMatchingService;
     
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private AdminStatsService adminStatsService;
+    
+    @Autowired
+    private AdminDashboardWebSocketHandler adminDashboard;
+    
+    @Autowired
+    private DriverPresenceRegistry driverPresenceRegistry;
+    
     public BookingService(BookingRepository bookingRepository, BookingProducer bookingProducer) {
         this.bookingRepository = bookingRepository;
         this.bookingProducer = bookingProducer;
@@ -62,33 +96,41 @@ public class BookingService {
         booking.setStatus("REQUESTED");
         Booking savedBooking = bookingRepository.save(booking);
         
-        // Send to Kafka for driver matching
-        bookingProducer.sendBookingEvent(savedBooking);
-        
-        // Send notification to driver
-        if (driverId != null) {
-            try {
-                var driverNotificationService = applicationContext.getBean(DriverNotificationService.class);
-                driverNotificationService.sendRideRequestToDriver(driverId, savedBooking, distance, duration, price);
-            } catch (Exception e) {
-                log.error("Error sending notification to driver {}", driverId, e);
-            }
+        if (driverId == null) {
+            // Send to Kafka for driver matching
+            bookingProducer.sendBookingEvent(savedBooking);
+        } else {
+            // Offer to the requested driver first, then to the nearest drivers in waves, once
+            // the booking is committed and a driver's accept can see it. The dispatch owns the
+            // booking and hands it to Kafka matching only if the waves run out.
+            afterCommit(() -> {
+                try {
+                    var dispatchEngine = applicationContext.getBean(DispatchEngine.class);
+                    dispatchEngine.dispatch(savedBooking, distance, duration, price, driverId);
+                } catch (Exception e) {
+                    log.error("Error sending notification to driver {}", driverId, e);
+                }
+            });
         }
         
         log.info("Created booking with notification: {} for driver: {}", savedBooking.getId(), driverId);
         return savedBooking;
     }
     
-    public List<Booking> getAllBookings() {
-        return bookingRepository.findAll();
+    /**
+     * A page of bookings, newest first
+     * @param before id of the last booking on the previous page, or null for the first page
+     */
+    public List<BookingSummary> getBookings(Long before, int limit) {
+        return bookingRepository.findByIdLessThanOrderByIdDesc(Keyset.before(before), Keyset.limit(limit));
     }
     
     public Optional<Booking> getBookingById(Long id) {
         return bookingRepository.findById(id);
     }
     
-    public List<Booking> getBookingsByRiderId(String riderId) {
-        return bookingRepository.findByRiderId(riderId);
+    public List<BookingSummary> getBookingsByRiderId(String riderId, Long before, int limit) {
+        return bookingRepository.findByRiderIdAndIdLessThanOrderByIdDesc(riderId, Keyset.before(before), Keyset.limit(limit));
     }
     
     @Transactional
@@ -97,6 +139,10 @@ public class BookingService {
         if (optionalBooking.isPresent()) {
             Booking booking = optionalBooking.get();
             booking.setStatus(status);
+            if ("CANCELLED".equals(status)) {
+                // Withdraw any ride requests still open for this booking
+                afterCommit(() -> applicationContext.getBean(DispatchEngine.class).cancel(bookingId));
+            }
             return bookingRepository.save(booking);
         }
         return null;
@@ -114,17 +160,150 @@ public class BookingService {
         return null;
     }
     
+    /**
+     * First-accept-wins assignment for a driver responding to a ride request
+     * @return false if the booking was already taken, cancelled or does not exist
+     */
+    @Transactional
+    public boolean acceptBooking(Long bookingId, String driverId) {
+        for (String status : OPEN_STATUSES) {
+            if (bookingRepository.acceptIfStatus(bookingId, driverId, status) == 1) {
+                afterCommit(() -> {
+                    adminStatsService.bookingStatusChanged(status, "ACCEPTED", null);
+                    adminDashboard.bookingStatusChanged(bookingId, "ACCEPTED", driverId);
+                    driverPresenceRegistry.rideStatusChanged(driverId, status, "ACCEPTED");
+                });
+                return true;
+            }
+        }
+        log.info("Driver {} lost booking {}: no longer open", driverId, bookingId);
+        return false;
+    }
+    
+    /**
+     * Reject on behalf of a driver without overwriting an acceptance that won the race
+     */
+    @Transactional
+    public boolean rejectBooking(Long bookingId, String driverId) {
+        for (String status : OPEN_STATUSES) {
+            if (bookingRepository.rejectIfStatus(bookingId, driverId, status) == 1) {
+                afterCommit(() -> {
+                    adminStatsService.bookingStatusChanged(status, "REJECTED", null);
+                    adminDashboard.bookingStatusChanged(bookingId, "REJECTED", null);
+                    driverPresenceRegistry.rideStatusChanged(driverId, status, "REJECTED");
+                });
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Record a batch of matcher assignments: a JDBC batch of conditional updates per open
+     * status (the second one only for bookings already ASSIGNED, usually none), then one
+     * select for the bookings that changed. A row the JDBC driver reports as SUCCESS_NO_INFO
+     * is looked up again before it counts as applied or moves on to the next pass. The
+     * assigned drivers are held busy from commit; a driver whose ASSIGNED booking went to
+     * another driver is freed.
+     * @return the updated bookings, for notifying their drivers
+     */
+    @Transactional
+    public List<Booking> applyAssignments(List<DriverAssigned> assignments) {
+        List<Long> updated = new ArrayList<>(assignments.size());
+        List<DriverAssigned> remaining = assignments;
+        for (String status : OPEN_STATUSES) {
+            if (remaining.isEmpty()) {
+                break;
+            }
+            // Drivers the ASSIGNED pass may displace; the JDBC updates bypass the entity listener
+            Map<Long, String> displaced = "ASSIGNED".equals(status) ? assignedDrivers(remaining) : Map.of();
+            int[][] counts = jdbcTemplate.batchUpdate(ASSIGN_SQL, remaining, remaining.size(), (ps, assignment) -> {
+                ps.setString(1, assignment.driverId());
+                ps.setString(2, assignment.status());
+                ps.setLong(3, assignment.bookingId());
+                ps.setString(4, status);
+            });
+            
+            List<DriverAssigned> notApplied = new ArrayList<>();
+            List<DriverAssigned> applied = new ArrayList<>();
+            List<DriverAssigned> unconfirmed = new ArrayList<>();
+            for (int i = 0; i < remaining.size(); i++) {
+                if (counts[0][i] == Statement.SUCCESS_NO_INFO) {
+                    // Reported by drivers that rewrite the batch: the row may or may not have matched
+                    unconfirmed.add(remaining.get(i));
+                } else if (counts[0][i] != 0) {
+                    applied.add(remaining.get(i));
+                } else {
+                    notApplied.add(remaining.get(i));
+                }
+            }
+            if (!unconfirmed.isEmpty()) {
+                Set<Long> matched = matchingAssignments(unconfirmed);
+                for (DriverAssigned assignment : unconfirmed) {
+                    (matched.contains(assignment.bookingId()) ? applied : notApplied).add(assignment);
+                }
+            }
+            applied.forEach(assignment -> updated.add(assignment.bookingId()));
+            afterCommit(() -> applied.forEach(assignment -> {
+                adminStatsService.bookingStatusChanged(status, assignment.status(), null);
+                adminDashboard.bookingStatusChanged(assignment.bookingId(), assignment.status(), assignment.driverId());
+                String previousDriver = displaced.get(assignment.bookingId());
+                if (previousDriver != null && !previousDriver.equals(assignment.driverId())) {
+                    driverPresenceRegistry.rideStatusChanged(previousDriver, status, null);
+                }
+                driverPresenceRegistry.rideStatusChanged(assignment.driverId(), status, assignment.status());
+                applicationContext.getBean(DispatchEngine.class).taken(assignment.bookingId());
+            }));
+            remaining = notApplied;
+        }
+        if (updated.size() < assignments.size()) {
+            log.info("Skipped {} of {} assignments for bookings no longer open", assignments.size() - updated.size(), assignments.size());
+        }
+        return updated.isEmpty() ? List.of() : bookingRepository.findAllById(updated);
+    }
+    
+    /**
+     * Booking ID -> current driver of those of the assignments' bookings that are ASSIGNED
+     */
+    private Map<Long, String> assignedDrivers(List<DriverAssigned> assignments) {
+        String placeholders = String.join(",", Collections.nCopies(assignments.size(), "?"));
+        Map<Long, String> drivers = new HashMap<>();
+        jdbcTemplate.query("SELECT id, driver_id FROM bookings WHERE status = 'ASSIGNED' AND id IN (" + placeholders + ")",
+                (RowCallbackHandler) rs -> drivers.put(rs.getLong(1), rs.getString(2)),
+                assignments.stream().map(DriverAssigned::bookingId).toArray());
+        return drivers;
+    }
+    
+    /**
+     * IDs of those of the assignments' bookings that now hold the assigned driver and status
+     */
+    private Set<Long> matchingAssignments(List<DriverAssigned> assignments) {
+        String placeholders = String.join(",", Collections.nCopies(assignments.size(), "?"));
+        Map<Long, DriverAssigned> byBooking = new HashMap<>();
+        assignments.forEach(assignment -> byBooking.put(assignment.bookingId(), assignment));
+        Set<Long> matched = new HashSet<>();
+        jdbcTemplate.query("SELECT id, driver_id, status FROM bookings WHERE id IN (" + placeholders + ")",
+                (RowCallbackHandler) rs -> {
+                    DriverAssigned assignment = byBooking.get(rs.getLong(1));
+                    if (assignment.driverId().equals(rs.getString(2)) && assignment.status().equals(rs.getString(3))) {
+                        matched.add(assignment.bookingId());
+                    }
+                },
+                byBooking.keySet().toArray());
+        return matched;
+    }
+    
     @Transactional
     public Booking updateBooking(Booking booking) {
         return bookingRepository.save(booking);
     }
     
-    public List<Booking> getBookingsByDriverId(String driverId) {
-        return bookingRepository.findByDriverId(driverId);
+    public List<BookingSummary> getBookingsByDriverId(String driverId, Long before, int limit) {
+        return bookingRepository.findByDriverIdAndIdLessThanOrderByIdDesc(driverId, Keyset.before(before), Keyset.limit(limit));
     }
     
-    public List<Booking> getBookingsByStatus(String status) {
-        return bookingRepository.findByStatus(status);
+    public List<BookingSummary> getBookingsByStatus(String status, Long before, int limit) {
+        return bookingRepository.findByStatusAndIdLessThanOrderByIdDesc(status, Keyset.before(before), Keyset.limit(limit));
     }
     
     @Transactional
@@ -132,36 +311,38 @@ public class BookingService {
         booking.setStatus("REQUESTED");
         Booking savedBooking = bookingRepository.save(booking);
         
-        // Send notifications to ALL connected drivers
-        try {
-            var driverNotificationService = applicationContext.getBean(DriverNotificationService.class);
-            
-            // Get all available drivers (connected to WebSocket)
-            List<String> availableDrivers = driverNotificationService.getAvailableDrivers();
-            
-            if (!availableDrivers.isEmpty()) {
-                log.info("Found {} connected drivers for booking {}", availableDrivers.size(), savedBooking.getId());
-                
-                // Send notification to ALL connected drivers
-                driverNotificationService.sendRideRequestToMultipleDrivers(availableDrivers, savedBooking, distance, duration, price);
-                
-                log.info("Sent notifications to ALL {} connected drivers for booking {}", 
-                        availableDrivers.size(), savedBooking.getId());
-                
-            } else {
-                log.warn("No connected drivers available for booking {}. Will use Kafka-based matching.", savedBooking.getId());
-                // Fallback to Kafka-based matching
-                bookingProducer.sendBookingEventWithDetails(savedBooking, distance, duration, price);
+        // Offer to the nearest connected drivers in small waves, once the booking is committed
+        // and a driver's accept can see it. The dispatch owns the booking and falls back to
+        // Kafka-based matching itself when nobody can be reached or nobody accepts.
+        afterCommit(() -> {
+            try {
+                var dispatchEngine = applicationContext.getBean(DispatchEngine.class);
+                if (!dispatchEngine.dispatch(savedBooking, distance, duration, price, null)) {
+                    log.warn("No connected drivers near booking {}. Using Kafka-based matching.", savedBooking.getId());
+                }
+            } catch (Exception e) {
+                log.error("Error dispatching booking {} to drivers", savedBooking.getId(), e);
             }
-            
-        } catch (Exception e) {
-            log.error("Error sending notifications to drivers for booking {}", savedBooking.getId(), e);
-            // Fallback to Kafka-based matching
-            bookingProducer.sendBookingEventWithDetails(savedBooking, distance, duration, price);
-        }
+        });
         
-        log.info("Created booking with broadcast notification: {} (distance: {}, duration: {}, price: {})", 
+        log.info("Created booking with targeted dispatch: {} (distance: {}, duration: {}, price: {})", 
                 savedBooking.getId(), distance, duration, price);
         return savedBooking;
     }
-} 
\ No newline at end of file
+    
+    /**
+     * Run once the current transaction commits, or now if there is none
+     */
+    private static void afterCommit(Runnable task) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            task.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                task.run();
+            }
+        });
+    }
+}
\ No newline at end of file
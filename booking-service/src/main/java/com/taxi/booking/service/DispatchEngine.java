@@ -0,0 +1,452 @@
+package com.taxi.booking.service;
+
+import com.taxi.booking.model.Booking;
+import com.taxi.booking.model.DriverLocation;
+import com.taxi.booking.model.User;
+import com.taxi.booking.producer.BookingProducer;
+import com.taxi.booking.repository.BookingRepository;
+import com.taxi.booking.util.DistanceCalculator;
+import com.taxi.booking.util.HashedWheelTimer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongPredicate;
+
+/**
+ * Targeted dispatch: offers a booking to the nearest available drivers in small waves.
+ *
+ * Each wave offers the booking to the next WAVE_SIZE available drivers, nearest first,
+ * each with a short TTL tracked on a timing wheel. The next wave goes out once every
+ * offer of the current one has been rejected or has expired. An accept on an open offer
+ * goes on to the conditional update in BookingService, which picks the winner; only once
+ * it has succeeded are the other open offers withdrawn. If it fails, the dispatch carries
+ * on as if that driver had rejected.
+ *
+ * A dispatched booking has one owner: no booking event is written for it at creation,
+ * and only when the waves run out is it handed to Kafka-based matching. The booking's
+ * status is read before each wave and before that hand-over, so a booking accepted,
+ * assigned or cancelled by any other path ends its dispatch instead of being offered on.
+ *
+ * Offer state lives in memory per booking and is guarded by that booking's lock. Offers,
+ * withdrawals and the Kafka fallback are sent after the lock is released, so a slow
+ * driver socket never holds up the booking's other drivers. DriverNotificationService
+ * only delivers the messages.
+ */
+@Service
+public class DispatchEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(DispatchEngine.class);
+
+    private static final int WAVE_SIZE = 3;
+
+    private static final long OFFER_TTL_SECONDS = 15;
+
+    private static final int MAX_WAVES = 5;
+
+    // Nearest available drivers fetched per wave beyond those already offered, in case some were offered since
+    private static final int CANDIDATES_PER_LOOKUP = 20;
+
+    private static final double SEARCH_RADIUS_KM = 10;
+
+    public enum AcceptResult {
+        /** The offer to this driver was open; report the conditional update's outcome to acceptSettled */
+        OPEN,
+        /** Another driver already won, or the offer to this driver was withdrawn or had expired */
+        TAKEN,
+        /** The booking is not being dispatched by this engine */
+        UNTRACKED
+    }
+
+    private enum Phase { OFFERING, ASSIGNED, EXHAUSTED }
+
+    @Autowired
+    private GeoMatchingService geoMatchingService;
+
+    @Autowired
+    private DriverNotificationService driverNotificationService;
+    
+    @Autowired
+    private BookingProducer bookingProducer;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    // Booking ID -> dispatch in progress
+    private final Map<Long, Dispatch> dispatches = new ConcurrentHashMap<>();
+
+    private HashedWheelTimer offerTimer;
+    private ExecutorService timerExecutor;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threads = new AtomicInteger();
+        timerExecutor = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "dispatch-offer-expiry-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 100ms ticks, 512 slots: an offer TTL lands in its slot on the first rotation
+        offerTimer = new HashedWheelTimer("dispatch-offer-timer", 100, TimeUnit.MILLISECONDS, 512, timerExecutor);
+    }
+
+    @PreDestroy
+    public void stop() {
+        offerTimer.stop();
+        timerExecutor.shutdownNow();
+    }
+
+    /**
+     * Start dispatching a committed booking, optionally offering it to a preferred driver
+     * first. The engine owns the booking from here: if no wave is accepted and it is still
+     * REQUESTED, the engine hands it to Kafka-based matching.
+     * @return false if no offer could be delivered
+     */
+    public boolean dispatch(Booking booking, double distance, double duration, double price, String preferredDriverId) {
+        double[] pickup = DistanceCalculator.parseLocation(booking.getPickupLocation());
+        if (pickup == null) {
+            log.warn("Cannot dispatch booking {}: invalid pickup location {}", booking.getId(), booking.getPickupLocation());
+            bookingProducer.sendBookingEventInNewTransaction(booking, distance, duration, price);
+            return false;
+        }
+
+        Dispatch dispatch = new Dispatch(booking, pickup[0], pickup[1], distance, duration, price);
+        dispatches.put(booking.getId(), dispatch);
+
+        Wave wave;
+        synchronized (dispatch) {
+            wave = preferredDriverId != null && driverNotificationService.isDriverAvailable(preferredDriverId)
+                    ? offerWave(dispatch, List.of(preferredDriverId))
+                    : nextWave(dispatch);
+        }
+        send(dispatch, wave);
+        synchronized (dispatch) {
+            return dispatch.started;
+        }
+    }
+
+    /**
+     * A driver accepted. OPEN means its offer was still open: the caller runs the conditional
+     * update and reports the outcome to acceptSettled. Until then the booking's other offers
+     * stay open and no further wave goes out.
+     */
+    public AcceptResult onAccept(Long bookingId, String driverId) {
+        Dispatch dispatch = dispatches.get(bookingId);
+        if (dispatch == null) {
+            return AcceptResult.UNTRACKED;
+        }
+        synchronized (dispatch) {
+            if (dispatch.phase != Phase.OFFERING || !dispatch.openOffers.containsKey(driverId)) {
+                return AcceptResult.TAKEN;
+            }
+            dispatch.started = true;
+            cancelTimeout(dispatch.openOffers.remove(driverId));
+            dispatch.accepting.add(driverId);
+        }
+        return AcceptResult.OPEN;
+    }
+
+    /**
+     * Outcome of the conditional update for an accept onAccept answered OPEN. The winner ends
+     * the dispatch and the other open offers are withdrawn; a failed accept counts as a
+     * rejection, so the dispatch goes back to its open wave.
+     */
+    public void acceptSettled(Long bookingId, String driverId, boolean won) {
+        Dispatch dispatch = dispatches.get(bookingId);
+        if (dispatch == null) {
+            return;
+        }
+        List<String> losers = List.of();
+        Wave next = Wave.NONE;
+        synchronized (dispatch) {
+            if (!dispatch.accepting.remove(driverId) || dispatch.phase != Phase.OFFERING) {
+                return;
+            }
+            if (won) {
+                dispatch.phase = Phase.ASSIGNED;
+                losers = new ArrayList<>(dispatch.openOffers.keySet());
+                dispatch.openOffers.values().forEach(DispatchEngine::cancelTimeout);
+                dispatch.openOffers.clear();
+                dispatches.remove(bookingId, dispatch);
+            } else {
+                next = advanceIfWaveDone(dispatch);
+            }
+        }
+
+        if (won) {
+            log.info("Booking {} won by driver {} in wave {}", bookingId, driverId, dispatch.wave);
+            for (String loser : losers) {
+                driverNotificationService.withdrawRideRequest(loser, bookingId, "RIDE_TAKEN", "Ride was accepted by another driver");
+            }
+        } else {
+            log.info("Driver {} lost booking {} in the database, continuing dispatch", driverId, bookingId);
+            send(dispatch, next);
+        }
+    }
+
+    /**
+     * A driver rejected; once the whole wave has answered or expired, the next wave goes out.
+     * @return false if the booking is not being dispatched by this engine
+     */
+    public boolean onReject(Long bookingId, String driverId) {
+        Dispatch dispatch = dispatches.get(bookingId);
+        if (dispatch == null) {
+            return false;
+        }
+        Wave next = Wave.NONE;
+        synchronized (dispatch) {
+            if (dispatch.openOffers.containsKey(driverId)) {
+                dispatch.started = true;
+                cancelTimeout(dispatch.openOffers.remove(driverId));
+                next = advanceIfWaveDone(dispatch);
+            }
+        }
+        send(dispatch, next);
+        return true;
+    }
+
+    /**
+     * Stop dispatching a booking, e.g. when the rider cancels, and withdraw its open offers
+     */
+    public void cancel(Long bookingId) {
+        stop(bookingId, "RIDE_CANCELLED", "Ride was cancelled");
+    }
+
+    /**
+     * Stop dispatching a booking another path has given a driver, e.g. Kafka-based
+     * matching, and withdraw its open offers
+     */
+    public void taken(Long bookingId) {
+        stop(bookingId, "RIDE_TAKEN", "Ride was accepted by another driver");
+    }
+
+    private void stop(Long bookingId, String type, String message) {
+        Dispatch dispatch = dispatches.get(bookingId);
+        if (dispatch == null) {
+            return;
+        }
+        List<String> withdrawn;
+        synchronized (dispatch) {
+            withdrawn = end(dispatch);
+        }
+        for (String driverId : withdrawn) {
+            driverNotificationService.withdrawRideRequest(driverId, bookingId, type, message);
+        }
+    }
+
+    public boolean isDispatching(Long bookingId) {
+        return dispatches.containsKey(bookingId);
+    }
+
+    private void onOfferExpired(Dispatch dispatch, String driverId) {
+        boolean expired;
+        Wave next = Wave.NONE;
+        synchronized (dispatch) {
+            expired = dispatch.phase == Phase.OFFERING && dispatch.openOffers.remove(driverId) != null;
+            if (expired) {
+                next = advanceIfWaveDone(dispatch);
+            }
+        }
+        if (expired) {
+            log.info("⏰ Offer of booking {} to driver {} expired", dispatch.booking.getId(), driverId);
+            driverNotificationService.withdrawRideRequest(driverId, dispatch.booking.getId(),
+                    "RIDE_REQUEST_EXPIRED", "Ride request expired");
+        }
+        send(dispatch, next);
+    }
+
+    /**
+     * Deliver a wave's offers, then start the TTLs of those delivered and drop the rest. A
+     * wave nobody could be reached in moves straight on to the next. Callers must not hold
+     * the dispatch lock.
+     */
+    private void send(Dispatch dispatch, Wave wave) {
+        Booking booking = dispatch.booking;
+        while (!wave.drivers().isEmpty()) {
+            if (!isRequested(dispatch)) {
+                return;
+            }
+            List<String> delivered = new ArrayList<>(wave.drivers().size());
+            for (String driverId : wave.drivers()) {
+                if (driverNotificationService.sendRideRequestToDriver(driverId, booking,
+                        dispatch.distance, dispatch.duration, dispatch.price)) {
+                    delivered.add(driverId);
+                }
+            }
+            log.info("Dispatch wave {} for booking {}: offered to {}", wave.number(), booking.getId(), delivered);
+
+            synchronized (dispatch) {
+                for (String driverId : wave.drivers()) {
+                    // Absent if the driver already answered or the dispatch ended meanwhile
+                    if (!dispatch.openOffers.containsKey(driverId)) {
+                        continue;
+                    }
+                    if (delivered.contains(driverId)) {
+                        dispatch.openOffers.put(driverId, offerTimer.newTimeout(
+                                () -> onOfferExpired(dispatch, driverId), OFFER_TTL_SECONDS, TimeUnit.SECONDS));
+                    } else {
+                        dispatch.openOffers.remove(driverId);
+                    }
+                }
+                dispatch.started |= !delivered.isEmpty();
+                wave = advanceIfWaveDone(dispatch);
+            }
+        }
+        if (wave.fallBack() && isRequested(dispatch)) {
+            log.warn("⚠️ No driver accepted booking {} after {} waves, falling back to Kafka-based matching",
+                    booking.getId(), wave.number());
+            bookingProducer.sendBookingEventInNewTransaction(booking, dispatch.distance, dispatch.duration, dispatch.price);
+        }
+    }
+
+    /**
+     * Whether the booking is still REQUESTED in the database; if not, the dispatch is ended
+     * without withdrawals, as only offers not yet sent can be open. Callers must not hold
+     * the dispatch lock.
+     */
+    private boolean isRequested(Dispatch dispatch) {
+        Long bookingId = dispatch.booking.getId();
+        if ("REQUESTED".equals(bookingRepository.findStatusById(bookingId))) {
+            return true;
+        }
+        synchronized (dispatch) {
+            end(dispatch);
+        }
+        log.info("Booking {} is no longer requested, ending its dispatch", bookingId);
+        return false;
+    }
+
+    /**
+     * End the dispatch and cancel its offer TTLs. Callers hold the dispatch lock.
+     * @return drivers whose offers were open
+     */
+    private List<String> end(Dispatch dispatch) {
+        dispatch.phase = Phase.EXHAUSTED;
+        dispatches.remove(dispatch.booking.getId(), dispatch);
+        List<String> open = new ArrayList<>(dispatch.openOffers.keySet());
+        dispatch.openOffers.values().forEach(DispatchEngine::cancelTimeout);
+        dispatch.openOffers.clear();
+        return open;
+    }
+
+    // Callers hold the dispatch lock
+    private Wave advanceIfWaveDone(Dispatch dispatch) {
+        if (dispatch.phase == Phase.OFFERING && dispatch.openOffers.isEmpty() && dispatch.accepting.isEmpty()) {
+            return nextWave(dispatch);
+        }
+        return Wave.NONE;
+    }
+
+    // Callers hold the dispatch lock
+    private Wave nextWave(Dispatch dispatch) {
+        if (dispatch.wave < MAX_WAVES) {
+            List<String> drivers = nextCandidates(dispatch);
+            if (!drivers.isEmpty()) {
+                return offerWave(dispatch, drivers);
+            }
+        }
+        dispatch.phase = Phase.EXHAUSTED;
+        dispatches.remove(dispatch.booking.getId(), dispatch);
+        return new Wave(dispatch.wave, List.of(), true);
+    }
+
+    private List<String> nextCandidates(Dispatch dispatch) {
+        // Online, connected, free drivers of the booking's vehicle type, filtered inside the spatial search
+        List<DriverLocation> nearest = geoMatchingService.findNearestDrivers(dispatch.pickupLat, dispatch.pickupLng,
+                dispatch.offered.size() + CANDIDATES_PER_LOOKUP, SEARCH_RADIUS_KM, dispatch.candidateFilter);
+        List<String> drivers = new ArrayList<>(WAVE_SIZE);
+        for (DriverLocation candidate : nearest) {
+            String driverId = candidate.getDriverId();
+            if (!dispatch.offered.contains(driverId)) {
+                drivers.add(driverId);
+                if (drivers.size() == WAVE_SIZE) {
+                    break;
+                }
+            }
+        }
+        return drivers;
+    }
+
+    /**
+     * Open a wave of offers, to be sent once the lock is released. Callers hold the dispatch lock.
+     */
+    private Wave offerWave(Dispatch dispatch, List<String> drivers) {
+        dispatch.wave++;
+        for (String driverId : drivers) {
+            dispatch.offered.add(driverId);
+            // No TTL until the offer is delivered
+            dispatch.openOffers.put(driverId, null);
+        }
+        return new Wave(dispatch.wave, drivers, false);
+    }
+
+    private static void cancelTimeout(HashedWheelTimer.Timeout timeout) {
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * What to send once the dispatch lock is released: a wave of offers, or the Kafka fallback
+     */
+    private record Wave(int number, List<String> drivers, boolean fallBack) {
+
+        static final Wave NONE = new Wave(0, List.of(), false);
+    }
+
+    /**
+     * Offer state of one booking; fields are guarded by the instance lock
+     */
+    private static class Dispatch {
+
+        final Booking booking;
+        final double pickupLat;
+        final double pickupLng;
+        final double distance;
+        final double duration;
+        final double price;
+        final LongPredicate candidateFilter;
+
+        Phase phase = Phase.OFFERING;
+        // Set once an offer has reached a driver
+        boolean started;
+        int wave;
+        final Set<String> offered = new HashSet<>();
+        // Driver ID -> TTL of its offer, null while the offer is being delivered
+        final Map<String, HashedWheelTimer.Timeout> openOffers = new HashMap<>();
+        // Drivers whose accept is at the conditional update
+        final Set<String> accepting = new HashSet<>();
+
+        Dispatch(Booking booking, double pickupLat, double pickupLng, double distance, double duration, double price) {
+            this.booking = booking;
+            this.pickupLat = pickupLat;
+            this.pickupLng = pickupLng;
+            this.distance = distance;
+            this.duration = duration;
+            this.price = price;
+            this.candidateFilter = DriverPresenceRegistry.availableWith(vehicleType(booking.getVehicleType()));
+        }
+    }
+
+    private static User.VehicleType vehicleType(String vehicleType) {
+        try {
+            return vehicleType != null ? User.VehicleType.valueOf(vehicleType.toUpperCase()) : null;
+        } catch (IllegalArgumentException e) {
+            return null; // Any vehicle will do
+        }
+    }
+}
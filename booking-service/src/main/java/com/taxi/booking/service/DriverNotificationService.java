@@ -9,8 +9,6 @@ import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
 
 @Service
 public class DriverNotificationService {
@@ -21,12 +19,13 @@ public class DriverNotificationService {
     private ApplicationContext applicationContext;
     
     @Autowired
-    private BookingService bookingService;
+    private DriverPresenceRegistry driverPresenceRegistry;
     
     /**
      * Send ride request to a specific driver
+     * @return true if the request was delivered
      */
-    public void sendRideRequestToDriver(String driverId, Booking booking, double distance, double duration, double price) {
+    public boolean sendRideRequestToDriver(String driverId, Booking booking, double distance, double duration, double price) {
         try {
             log.info("🔄 Attempting to send ride request to driver {} for booking {}", driverId, booking.getId());
             
@@ -35,32 +34,37 @@ public class DriverNotificationService {
             // Check if driver is connected
             if (!driverNotificationWebSocketHandler.isDriverConnected(driverId)) {
                 log.warn("⚠️ Driver {} is not connected to WebSocket - notification will not be delivered", driverId);
-                return;
+                return false;
             }
             
             // Send the ride request
             driverNotificationWebSocketHandler.sendRideRequestToDriver(driverId, booking, distance, duration, price);
             log.info("✅ Successfully sent ride request to driver {} for booking {}", driverId, booking.getId());
             
-            // Set a timeout for driver response (30 seconds)
-            CompletableFuture.runAsync(() -> {
-                try {
-                    TimeUnit.SECONDS.sleep(30);
-                    
-                    // Check if booking is still pending
-                    var currentBooking = bookingService.getBookingById(booking.getId());
-                    if (currentBooking.isPresent() && "REQUESTED".equals(currentBooking.get().getStatus())) {
-                        log.info("⏰ Driver {} did not respond to booking {} within 30 seconds timeout", driverId, booking.getId());
-                        // Could implement fallback logic here (e.g., try another driver)
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    log.warn("⏰ Timeout check interrupted for driver {} booking {}", driverId, booking.getId());
-                }
-            });
+            return true;
             
         } catch (Exception e) {
             log.error("❌ Error sending ride request to driver {} for booking {}", driverId, booking.getId(), e);
+            return false;
+        }
+    }
+    
+    /**
+     * Tell a driver that a ride request it received is no longer open
+     * @param type RIDE_TAKEN, RIDE_REQUEST_EXPIRED or RIDE_CANCELLED
+     */
+    public void withdrawRideRequest(String driverId, Long bookingId, String type, String message) {
+        try {
+            var driverNotificationWebSocketHandler = applicationContext.getBean(com.taxi.booking.websocket.DriverNotificationWebSocketHandler.class);
+            if (driverNotificationWebSocketHandler.isDriverConnected(driverId)) {
+                driverNotificationWebSocketHandler.sendToDriver(driverId, Map.of(
+                    "type", type,
+                    "bookingId", bookingId,
+                    "message", message
+                ));
+            }
+        } catch (Exception e) {
+            log.error("❌ Error withdrawing ride request {} from driver {}", bookingId, driverId, e);
         }
     }
     
@@ -78,14 +82,13 @@ public class DriverNotificationService {
     }
     
     /**
-     * Check if a driver is online and available for notifications
+     * Check if a driver is online, connected and not on a ride
      */
     public boolean isDriverAvailable(String driverId) {
         try {
-            var driverNotificationWebSocketHandler = applicationContext.getBean(com.taxi.booking.websocket.DriverNotificationWebSocketHandler.class);
-            boolean isConnected = driverNotificationWebSocketHandler.isDriverConnected(driverId);
-            log.debug("🔍 Driver {} availability check: {}", driverId, isConnected ? "ONLINE" : "OFFLINE");
-            return isConnected;
+            boolean isAvailable = driverPresenceRegistry.isAvailable(driverId);
+            log.debug("🔍 Driver {} availability check: {}", driverId, isAvailable ? "AVAILABLE" : "UNAVAILABLE");
+            return isAvailable;
         } catch (Exception e) {
             log.error("❌ Error checking driver availability for {}", driverId, e);
             return false;
@@ -93,12 +96,11 @@ public class DriverNotificationService {
     }
     
     /**
-     * Get list of available drivers
+     * Get list of available drivers: online, connected and not on a ride
      */
     public List<String> getAvailableDrivers() {
         try {
-            var driverNotificationWebSocketHandler = applicationContext.getBean(com.taxi.booking.websocket.DriverNotificationWebSocketHandler.class);
-            return driverNotificationWebSocketHandler.getConnectedDrivers();
+            return driverPresenceRegistry.availableDrivers();
         } catch (Exception e) {
             log.error("❌ Error getting available drivers", e);
             return List.of();
@@ -128,4 +130,4 @@ public class DriverNotificationService {
             log.error("❌ Error sending notification to rider {}: {}", riderId, message.get("type"), e);
         }
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
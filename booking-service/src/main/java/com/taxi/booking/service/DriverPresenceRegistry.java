@@ -0,0 +1,268 @@
+package com.taxi.booking.service;
+
+import com.taxi.booking.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
+
+/**
+ * Where every driver stands right now, in one 64-bit state word per driver:
+ *
+ *   bit 0     ONLINE     taking rides: set when the driver's app connects or its status is set ONLINE,
+ *                        cleared when its status is set OFFLINE
+ *   bit 1     CONNECTED  the ride notification WebSocket is open
+ *   bit 2     BUSY       on a ride: between being assigned or accepting a booking and it ending
+ *   bits 3-5  vehicle type ordinal + 1, 0 if unknown
+ *   bits 8-63 last seen, epoch millis
+ *
+ * Words are updated with a compare-and-set loop, so readers never lock. Any location
+ * ping or driver message is a heartbeat; a driver that is not connected and has not been
+ * seen for the heartbeat timeout is dropped by the sweep. The sweep expires a driver by
+ * setting its word to 0 with a compare-and-set against the value it checked, so a
+ * heartbeat landing in between keeps the driver; a word at 0 is never used again, and
+ * the driver's next heartbeat registers a new one.
+ *
+ * GeoMatchingService indexes each driver with a reference to its word, so a nearest
+ * search filters on availability as it collects candidates. Flag changes and expiries
+ * are published to listeners on the thread that made them; heartbeats are not.
+ */
+@Service
+public class DriverPresenceRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(DriverPresenceRegistry.class);
+
+    public static final long ONLINE = 1L;
+    public static final long CONNECTED = 1L << 1;
+    public static final long BUSY = 1L << 2;
+
+    private static final int VEHICLE_SHIFT = 3;
+    private static final long VEHICLE_MASK = 0b111L << VEHICLE_SHIFT;
+    private static final int LAST_SEEN_SHIFT = 8;
+    private static final long FLAGS_MASK = (1L << LAST_SEEN_SHIFT) - 1;
+
+    private static final User.VehicleType[] VEHICLE_TYPES = User.VehicleType.values();
+
+    // Online, connected and not on a ride
+    public static final LongPredicate AVAILABLE = state -> (state & (ONLINE | CONNECTED | BUSY)) == (ONLINE | CONNECTED);
+
+    /**
+     * Told about every change to a driver's flags or vehicle type, and about expiry
+     * (current is 0). Runs on the thread that made the change, so it must be quick.
+     */
+    public interface Listener {
+        void presenceChanged(String driverId, long previous, long current);
+    }
+
+    @Value("${app.presence.heartbeat-timeout-seconds:60}")
+    private long heartbeatTimeoutSeconds = 60;
+
+    // Driver ID -> state word
+    private final Map<String, AtomicLong> presence = new ConcurrentHashMap<>();
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Record a heartbeat, registering the driver on first sight
+     * @return the driver's state word, for GeoMatchingService to index it with
+     */
+    public AtomicLong touch(String driverId) {
+        long now = System.currentTimeMillis();
+        while (true) {
+            AtomicLong state = presence.computeIfAbsent(driverId, id -> new AtomicLong(withLastSeen(0, now)));
+            long current;
+            // One write per driver per millisecond at most
+            while ((current = state.get()) != 0) {
+                if (lastSeen(current) >= now || state.compareAndSet(current, withLastSeen(current, now))) {
+                    return state;
+                }
+            }
+            // Expired just now; register afresh
+            presence.remove(driverId, state);
+        }
+    }
+
+    /**
+     * Register a driver last heard from at the given time, as restored from a previous run.
+     * A driver already present keeps its word untouched. No flags are set: the driver is not
+     * online until its app connects, and the sweep drops it a heartbeat timeout after
+     * lastSeen if it never does.
+     * @return the driver's state word, for GeoMatchingService to index it with
+     */
+    public AtomicLong restore(String driverId, long lastSeen) {
+        while (true) {
+            AtomicLong state = presence.computeIfAbsent(driverId, id -> new AtomicLong(withLastSeen(0, lastSeen)));
+            if (state.get() != 0) {
+                return state;
+            }
+            // Expired just now; register afresh
+            presence.remove(driverId, state);
+        }
+    }
+
+    /**
+     * The driver's app opened its notification socket; that also puts it online
+     * @param vehicleType null if not known
+     */
+    public void connected(String driverId, User.VehicleType vehicleType) {
+        update(driverId, true, CONNECTED | ONLINE | vehicleBits(vehicleType), vehicleType != null ? VEHICLE_MASK : 0);
+    }
+
+    public void disconnected(String driverId) {
+        update(driverId, false, 0, CONNECTED);
+    }
+
+    /**
+     * The driver's account status changed. Only applied to drivers already present: a
+     * driver nobody has heard from stays unknown until it connects or pings.
+     */
+    public void statusChanged(String driverId, User.Status status, User.VehicleType vehicleType) {
+        long set = (status == User.Status.ONLINE ? ONLINE : 0) | vehicleBits(vehicleType);
+        long clear = (status == User.Status.ONLINE ? 0 : ONLINE) | (vehicleType != null ? VEHICLE_MASK : 0);
+        update(driverId, false, set, clear);
+    }
+
+    /**
+     * A booking assigned to the driver moved between statuses. The driver becomes busy when
+     * it is assigned or accepts, and free when that ride ends; offers coming and going
+     * change nothing.
+     * @param to null if the booking was taken away from this driver
+     */
+    public void rideStatusChanged(String driverId, String from, String to) {
+        if (driverId == null) {
+            return;
+        }
+        if (isRideInProgress(to)) {
+            update(driverId, false, BUSY, 0);
+        } else if (isRideInProgress(from)) {
+            update(driverId, false, 0, BUSY);
+        }
+    }
+
+    /**
+     * @return the driver's state word, or 0 if the driver is not present
+     */
+    public long state(String driverId) {
+        AtomicLong state = presence.get(driverId);
+        return state != null ? state.get() : 0L;
+    }
+
+    public boolean isAvailable(String driverId) {
+        return AVAILABLE.test(state(driverId));
+    }
+
+    public List<String> availableDrivers() {
+        List<String> drivers = new ArrayList<>();
+        presence.forEach((driverId, state) -> {
+            if (AVAILABLE.test(state.get())) {
+                drivers.add(driverId);
+            }
+        });
+        return drivers;
+    }
+
+    public int size() {
+        return presence.size();
+    }
+
+    /**
+     * Available drivers with the given vehicle type, or whose type is unknown
+     */
+    public static LongPredicate availableWith(User.VehicleType vehicleType) {
+        if (vehicleType == null) {
+            return AVAILABLE;
+        }
+        long wanted = vehicleBits(vehicleType);
+        return state -> AVAILABLE.test(state) && ((state & VEHICLE_MASK) == 0 || (state & VEHICLE_MASK) == wanted);
+    }
+
+    public static User.VehicleType vehicleType(long state) {
+        int ordinal = (int) ((state & VEHICLE_MASK) >>> VEHICLE_SHIFT);
+        return ordinal == 0 ? null : VEHICLE_TYPES[ordinal - 1];
+    }
+
+    public static long lastSeen(long state) {
+        return state >>> LAST_SEEN_SHIFT;
+    }
+
+    @Scheduled(fixedDelayString = "${app.presence.sweep-interval-ms:10000}")
+    public void expireSilentDrivers() {
+        long cutoff = System.currentTimeMillis() - heartbeatTimeoutSeconds * 1000;
+        int expired = 0;
+        for (Map.Entry<String, AtomicLong> entry : presence.entrySet()) {
+            long state = entry.getValue().get();
+            // Fails if a heartbeat or connect landed since the read
+            if (state != 0 && (state & CONNECTED) == 0 && lastSeen(state) < cutoff
+                    && entry.getValue().compareAndSet(state, 0)) {
+                presence.remove(entry.getKey(), entry.getValue());
+                expired++;
+                publish(entry.getKey(), state, 0);
+            }
+        }
+        if (expired > 0) {
+            log.info("Expired {} drivers not seen for {}s, {} present", expired, heartbeatTimeoutSeconds, presence.size());
+        }
+    }
+
+    private void update(String driverId, boolean register, long set, long clear) {
+        AtomicLong state = register ? touch(driverId) : presence.get(driverId);
+        long now = System.currentTimeMillis();
+        long previous;
+        long current;
+        while (true) {
+            if (state == null) {
+                return;
+            }
+            previous = state.get();
+            if (previous == 0) {
+                // Expired since it was looked up
+                state = register ? touch(driverId) : null;
+                continue;
+            }
+            current = withLastSeen((previous & ~clear) | set, Math.max(now, lastSeen(previous)));
+            if (state.compareAndSet(previous, current)) {
+                break;
+            }
+        }
+
+        if ((previous & FLAGS_MASK) != (current & FLAGS_MASK)) {
+            publish(driverId, previous, current);
+        }
+    }
+
+    private void publish(String driverId, long previous, long current) {
+        for (Listener listener : listeners) {
+            try {
+                listener.presenceChanged(driverId, previous, current);
+            } catch (Exception e) {
+                log.error("Driver presence listener failed for driver {}", driverId, e);
+            }
+        }
+    }
+
+    private static long vehicleBits(User.VehicleType vehicleType) {
+        return vehicleType != null ? (long) (vehicleType.ordinal() + 1) << VEHICLE_SHIFT : 0;
+    }
+
+    // ASSIGNED is a Kafka assignment waiting for the driver's answer; the driver is held for it
+    private static boolean isRideInProgress(String bookingStatus) {
+        return "ASSIGNED".equals(bookingStatus) || "ACCEPTED".equals(bookingStatus) || "IN_PROGRESS".equals(bookingStatus);
+    }
+
+    private static long withLastSeen(long state, long millis) {
+        return (state & FLAGS_MASK) | (millis << LAST_SEEN_SHIFT);
+    }
+}
@@ -1,59 +1,78 @@
 package com.taxi.booking.service;
 
 import com.taxi.booking.model.DriverLocation;
+import com.taxi.booking.util.DriverSpatialIndex;
 import com.taxi.booking.util.GeohashUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import jakarta.annotation.PostConstruct;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
 
 @Service
 public class GeoMatchingService {
     
     private static final Logger log = LoggerFactory.getLogger(GeoMatchingService.class);
     
-    // Grid-based storage: geohash -> list of drivers in that area
-    private final Map<String, List<DriverLocation>> grid = new ConcurrentHashMap<>();
+    public static final int GRID_PRECISION = 6;
     
-    // Driver ID -> current location for quick lookup
-    private final Map<String, DriverLocation> driverLocations = new ConcurrentHashMap<>();
+    private static final double NEAREST_DRIVER_RADIUS_KM = 10;
     
-    public void updateDriverLocation(DriverLocation location) {
-        String geohash = GeohashUtils.encode(location.getLat(), location.getLng(), 6);
-        
-        // Update driver's current location
-        driverLocations.put(location.getDriverId(), location);
-        
-        // Add to grid
-        grid.computeIfAbsent(geohash, k -> new ArrayList<>()).add(location);
-        
-        log.info("Updated driver {} location: lat={}, lng={}, geohash={}", 
-                location.getDriverId(), location.getLat(), location.getLng(), geohash);
+    // Searches never reach further than this, whatever the caller asks for
+    public static final double MAX_SEARCH_RADIUS_KM = 50;
+    
+    // Grid-based storage: each driver sits in exactly one geohash cell
+    private final DriverSpatialIndex index = new DriverSpatialIndex(GRID_PRECISION);
+    
+    // Null when constructed outside Spring (benchmarks): drivers are indexed without presence state
+    private DriverPresenceRegistry presenceRegistry;
+    
+    @Autowired
+    public void setPresenceRegistry(DriverPresenceRegistry presenceRegistry) {
+        this.presenceRegistry = presenceRegistry;
+        // Drivers the registry expires leave the index with it, unless a ping has re-indexed them since
+        presenceRegistry.addListener((driverId, previous, current) -> {
+            if (current == 0) {
+                index.removeIfExpired(driverId);
+            }
+        });
     }
     
-    public List<DriverLocation> findNearbyDrivers(double lat, double lng, int maxDistance) {
-        String geohash = GeohashUtils.encode(lat, lng, 6);
-        List<DriverLocation> nearbyDrivers = new ArrayList<>();
-        
-        // Get drivers from the same geohash area
-        List<DriverLocation> driversInArea = grid.getOrDefault(geohash, new ArrayList<>());
+    /**
+     * Index a driver's location; also a presence heartbeat
+     * @return the long geohash grid cell the driver is now indexed under
+     */
+    public long updateDriverLocation(DriverLocation location) {
+        AtomicLong presence = presenceRegistry != null ? presenceRegistry.touch(location.getDriverId()) : null;
+        long geohash = index.update(location, presence);
         
-        for (DriverLocation driver : driversInArea) {
-            double distance = GeohashUtils.distance(lat, lng, driver.getLat(), driver.getLng());
-            if (distance <= maxDistance) {
-                nearbyDrivers.add(driver);
-            }
+        if (log.isTraceEnabled()) {
+            log.trace("Updated driver {} location: lat={}, lng={}, geohash={}", 
+                    location.getDriverId(), location.getLat(), location.getLng(), GeohashUtils.toBase32(geohash));
         }
-        
-        // Sort by distance
-        nearbyDrivers.sort((d1, d2) -> {
-            double dist1 = GeohashUtils.distance(lat, lng, d1.getLat(), d1.getLng());
-            double dist2 = GeohashUtils.distance(lat, lng, d2.getLat(), d2.getLng());
-            return Double.compare(dist1, dist2);
-        });
+        return geohash;
+    }
+    
+    /**
+     * Index a driver's last known location from a previous run. Not a heartbeat: the driver
+     * is registered as last seen at the location's timestamp, and a driver already present
+     * keeps its presence as it is.
+     * @return the long geohash grid cell the driver is now indexed under
+     */
+    public long restoreDriverLocation(DriverLocation location) {
+        AtomicLong presence = presenceRegistry != null
+                ? presenceRegistry.restore(location.getDriverId(), location.getTimestamp()) : null;
+        return index.update(location, presence);
+    }
+    
+    /**
+     * All drivers within maxDistance km (at most MAX_SEARCH_RADIUS_KM) of the given point, nearest first
+     */
+    public List<DriverLocation> findNearbyDrivers(double lat, double lng, int maxDistance) {
+        List<DriverLocation> nearbyDrivers = index.nearest(lat, lng, Integer.MAX_VALUE, radius(maxDistance));
         
         log.info("Found {} nearby drivers for location lat={}, lng={}", 
                 nearbyDrivers.size(), lat, lng);
@@ -61,36 +80,41 @@ public class GeoMatchingService {
         return nearbyDrivers;
     }
     
+    /**
+     * The k drivers nearest to the given point within maxDistanceKm, nearest first.
+     * Searches outward ring by ring of neighbouring geohash cells and stops as soon
+     * as no unvisited ring can hold a closer driver.
+     */
+    public List<DriverLocation> findNearestDrivers(double lat, double lng, int k, double maxDistanceKm) {
+        return index.nearest(lat, lng, k, radius(maxDistanceKm));
+    }
+    
+    /**
+     * As findNearestDrivers, counting only drivers whose presence state passes the filter
+     * (see DriverPresenceRegistry.AVAILABLE); the state is read from the index, not looked up
+     */
+    public List<DriverLocation> findNearestDrivers(double lat, double lng, int k, double maxDistanceKm, LongPredicate presenceFilter) {
+        return index.nearest(lat, lng, k, radius(maxDistanceKm), presenceFilter);
+    }
+    
     public Optional<DriverLocation> findNearestDriver(double lat, double lng) {
-        List<DriverLocation> nearby = findNearbyDrivers(lat, lng, 10); // 10km radius
-        return nearby.stream().findFirst();
+        List<DriverLocation> nearest = findNearestDrivers(lat, lng, 1, NEAREST_DRIVER_RADIUS_KM);
+        return nearest.stream().findFirst();
     }
     
     public List<DriverLocation> getAllDrivers() {
-        return new ArrayList<>(driverLocations.values());
+        return index.snapshot();
+    }
+    
+    public boolean hasDriver(String driverId) {
+        return index.get(driverId).isPresent();
     }
     
     public void removeDriver(String driverId) {
-        driverLocations.remove(driverId);
-        grid.values().forEach(drivers -> 
-            drivers.removeIf(driver -> driver.getDriverId().equals(driverId)));
+        index.remove(driverId);
     }
     
-    @PostConstruct
-    public void initializeDemoDrivers() {
-        log.info("Initializing demo drivers for testing...");
-        
-        // Add demo drivers in different locations around Hyderabad
-        updateDriverLocation(new DriverLocation("demo-driver", 17.4915584, 78.381056)); // Kukatpally
-        updateDriverLocation(new DriverLocation("driver1", 17.3457176, 78.5522296)); // L.B. Nagar
-        updateDriverLocation(new DriverLocation("driver2", 17.3850, 78.4867)); // Secunderabad
-        updateDriverLocation(new DriverLocation("driver3", 17.4065, 78.4772)); // Begumpet
-        updateDriverLocation(new DriverLocation("D1", 17.3850, 78.4867)); // Main driver for simulator
-        updateDriverLocation(new DriverLocation("venkat", 17.3604864, 78.4990208)); // Current driver location
-        updateDriverLocation(new DriverLocation("srinivas", 17.3850, 78.4867)); // Another driver
-        updateDriverLocation(new DriverLocation("rajesh", 17.4065, 78.4772)); // Another driver
-        updateDriverLocation(new DriverLocation("kumar", 17.3457176, 78.5522296)); // Another driver
-        
-        log.info("Demo drivers initialized. Total drivers: {}", driverLocations.size());
+    private static double radius(double maxDistanceKm) {
+        return Math.min(maxDistanceKm, MAX_SEARCH_RADIUS_KM);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,112 @@
+package com.taxi.booking.service;
+
+import com.taxi.booking.model.Booking;
+import com.taxi.booking.model.User;
+import com.taxi.booking.websocket.AdminDashboardWebSocketHandler;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * Feeds AdminStatsService and the live admin dashboard from Hibernate's post-commit insert
+ * and update events for bookings and users, so every entity save is counted and pushed once
+ * and only if it committed. Update events carry the pre-update state, which gives the
+ * transition's from-side. Committed users are also written through to UserCache, and
+ * driver status and ride transitions are passed to DriverPresenceRegistry.
+ */
+@Component
+public class StatsEntityListener implements PostCommitInsertEventListener, PostCommitUpdateEventListener {
+
+    private final transient EntityManagerFactory entityManagerFactory;
+    private final transient AdminStatsService adminStatsService;
+    private final transient AdminDashboardWebSocketHandler adminDashboard;
+    private final transient UserCache userCache;
+    private final transient DriverPresenceRegistry driverPresenceRegistry;
+
+    public StatsEntityListener(EntityManagerFactory entityManagerFactory, AdminStatsService adminStatsService,
+                               AdminDashboardWebSocketHandler adminDashboard, UserCache userCache,
+                               DriverPresenceRegistry driverPresenceRegistry) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.adminStatsService = adminStatsService;
+        this.adminDashboard = adminDashboard;
+        this.userCache = userCache;
+        this.driverPresenceRegistry = driverPresenceRegistry;
+    }
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Booking booking) {
+            adminStatsService.bookingCreated(booking.getStatus(), booking.getPrice(), booking.getCreatedAt());
+            adminDashboard.bookingChanged(booking);
+        } else if (event.getEntity() instanceof User user) {
+            adminStatsService.userCreated(user.getRole(), user.getStatus());
+            adminDashboard.userChanged(user);
+            userCache.put(user);
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Booking booking) {
+            adminDashboard.bookingChanged(booking);
+        } else if (event.getEntity() instanceof User user) {
+            adminDashboard.userChanged(user);
+            userCache.put(user);
+        }
+        Object[] oldState = event.getOldState();
+        if (oldState == null) {
+            return; // Not known for some detached updates; the next reconciliation catches up
+        }
+        if (event.getEntity() instanceof Booking booking) {
+            String oldStatus = (String) oldState[propertyIndex(event.getPersister(), "status")];
+            adminStatsService.bookingStatusChanged(oldStatus, booking.getStatus(), booking.getPrice());
+            driverPresenceRegistry.rideStatusChanged(booking.getDriverId(), oldStatus, booking.getStatus());
+        } else if (event.getEntity() instanceof User user) {
+            User.UserRole oldRole = (User.UserRole) oldState[propertyIndex(event.getPersister(), "role")];
+            User.Status oldStatus = (User.Status) oldState[propertyIndex(event.getPersister(), "status")];
+            adminStatsService.userChanged(oldRole, oldStatus, user.getRole(), user.getStatus());
+            if (user.getRole() == User.UserRole.DRIVER && oldStatus != user.getStatus()) {
+                driverPresenceRegistry.statusChanged(user.getUsername(), user.getStatus(), user.getVehicleType());
+            }
+        }
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+        // Nothing was counted
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        // Nothing was counted
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        String entityName = persister.getEntityName();
+        return entityName.equals(Booking.class.getName()) || entityName.equals(User.class.getName());
+    }
+
+    private static int propertyIndex(EntityPersister persister, String property) {
+        return Arrays.asList(persister.getPropertyNames()).indexOf(property);
+    }
+}
@@ -0,0 +1,88 @@
+package com.taxi.booking.service;
+
+import com.taxi.booking.model.User;
+import com.taxi.booking.model.UserSummary;
+import com.taxi.booking.repository.UserRepository;
+import com.taxi.booking.util.ExpiringCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Read-through cache of users by username, for the driver status endpoints the driver
+ * app polls.
+ *
+ * A miss selects a UserSummary (no entity) and caches it for the TTL. Committed user
+ * saves are written through by StatsEntityListener, so a status change is visible on the
+ * next poll. A miss only fills an empty slot, so a value it read before a concurrent
+ * commit never replaces that commit's write-through.
+ * Unknown usernames are not cached.
+ */
+@Service
+public class UserCache {
+
+    private final UserRepository userRepository;
+
+    @Value("${app.user-cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    @Value("${app.user-cache.max-size:10000}")
+    private int maxSize;
+
+    private ExpiringCache<String, UserSummary> byUsername;
+
+    public UserCache(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    @PostConstruct
+    public void init() {
+        // Idle timeout equal to the TTL: entries only ever expire by age
+        byUsername = new ExpiringCache<>(Duration.ofSeconds(ttlSeconds), Duration.ofSeconds(ttlSeconds), maxSize);
+    }
+
+    @Autowired(required = false)
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        FunctionCounter.builder("booking.user_cache.requests", this, cache -> cache.byUsername.hitCount())
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("booking.user_cache.requests", this, cache -> cache.byUsername.missCount())
+                .tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("booking.user_cache.evictions", this, cache -> cache.byUsername.evictionCount())
+                .description("Entries dropped for age or to stay within the size bound")
+                .register(meterRegistry);
+        Gauge.builder("booking.user_cache.size", this, cache -> cache.byUsername.size())
+                .register(meterRegistry);
+    }
+
+    public Optional<UserSummary> findByUsername(String username) {
+        UserSummary cached = byUsername.get(username);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<UserSummary> loaded = userRepository.findSummaryByUsername(username);
+        loaded.ifPresent(user -> byUsername.putIfAbsent(username, user));
+        return loaded;
+    }
+
+    /**
+     * Replace the cached entry with a user's committed state
+     */
+    public void put(User user) {
+        byUsername.put(user.getUsername(), UserSummary.of(user));
+    }
+
+    @Scheduled(fixedDelayString = "${app.user-cache.sweep-interval-ms:60000}")
+    public void purgeExpired() {
+        byUsername.purgeExpired();
+    }
+}
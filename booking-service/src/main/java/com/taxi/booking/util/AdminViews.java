@@ -0,0 +1,83 @@
+package com.taxi.booking.util;
+
+import com.taxi.booking.model.Booking;
+import com.taxi.booking.model.BookingSummary;
+import com.taxi.booking.model.User;
+import com.taxi.booking.model.UserProfile;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JSON shapes of the rows on the admin dashboard, shared by the REST list endpoints and
+ * the live dashboard WebSocket so a pushed row replaces a fetched one field for field.
+ */
+public final class AdminViews {
+
+    private AdminViews() {
+    }
+
+    public static Map<String, Object> booking(BookingSummary booking) {
+        Map<String, Object> bookingMap = new HashMap<>();
+        bookingMap.put("id", booking.id());
+        bookingMap.put("riderId", booking.riderId());
+        bookingMap.put("driverId", booking.driverId());
+        bookingMap.put("pickupLocation", booking.pickupLocation());
+        bookingMap.put("destination", booking.destination());
+        bookingMap.put("status", booking.status());
+        bookingMap.put("price", booking.price());
+        bookingMap.put("distance", booking.distance());
+        bookingMap.put("vehicleType", booking.vehicleType());
+        bookingMap.put("createdAt", booking.createdAt());
+        return bookingMap;
+    }
+
+    public static Map<String, Object> booking(Booking booking) {
+        Map<String, Object> bookingMap = new HashMap<>();
+        bookingMap.put("id", booking.getId());
+        bookingMap.put("riderId", booking.getRiderId());
+        bookingMap.put("driverId", booking.getDriverId());
+        bookingMap.put("pickupLocation", booking.getPickupLocation());
+        bookingMap.put("destination", booking.getDestination());
+        bookingMap.put("status", booking.getStatus());
+        bookingMap.put("price", booking.getPrice());
+        bookingMap.put("distance", booking.getDistance());
+        bookingMap.put("vehicleType", booking.getVehicleType());
+        bookingMap.put("createdAt", booking.getCreatedAt());
+        return bookingMap;
+    }
+
+    public static Map<String, Object> rider(UserProfile user) {
+        Map<String, Object> userMap = new HashMap<>();
+        userMap.put("id", user.id());
+        userMap.put("username", user.username());
+        userMap.put("email", user.email());
+        userMap.put("role", user.role());
+        userMap.put("phoneNumber", user.phoneNumber());
+        // Map ONLINE/OFFLINE to ACTIVE/INACTIVE for frontend
+        String displayStatus = user.status() == User.Status.ONLINE ? "ACTIVE" : "INACTIVE";
+        userMap.put("status", displayStatus);
+        userMap.put("createdAt", user.createdAt());
+        userMap.put("vehicleType", user.vehicleType());
+        userMap.put("licenseNumber", user.licenseNumber());
+        return userMap;
+    }
+
+    public static Map<String, Object> driver(UserProfile driver) {
+        Map<String, Object> driverMap = new HashMap<>();
+        driverMap.put("id", driver.id());
+        driverMap.put("username", driver.username());
+        driverMap.put("email", driver.email());
+        driverMap.put("phoneNumber", driver.phoneNumber());
+        // Map ONLINE/OFFLINE to AVAILABLE/BUSY for frontend
+        String displayStatus = driver.status() == User.Status.ONLINE ? "AVAILABLE" : "BUSY";
+        driverMap.put("status", displayStatus);
+        // Add accountStatus field that frontend expects
+        String accountStatus = driver.status() == User.Status.ONLINE ? "ACTIVE" : "INACTIVE";
+        driverMap.put("accountStatus", accountStatus);
+        driverMap.put("vehicleType", driver.vehicleType());
+        driverMap.put("licenseNumber", driver.licenseNumber());
+        driverMap.put("createdAt", driver.createdAt());
+        return driverMap;
+    }
+}
@@ -2,8 +2,6 @@ package com.taxi.booking.util;
 
 public class DistanceCalculator {
     
-    private static final double EARTH_RADIUS = 6371; // Earth's radius in kilometers
-    
     /**
      * Calculate distance between two GPS coordinates using Haversine formula
      * @param lat1 Latitude of first point
@@ -18,25 +16,8 @@ public class DistanceCalculator {
             return 0.5; // Return minimum distance of 0.5 km for same location
         }
         
-        // Convert latitude and longitude from degrees to radians
-        double lat1Rad = Math.toRadians(lat1);
-        double lng1Rad = Math.toRadians(lng1);
-        double lat2Rad = Math.toRadians(lat2);
-        double lng2Rad = Math.toRadians(lng2);
-        
-        // Differences in coordinates
-        double deltaLat = lat2Rad - lat1Rad;
-        double deltaLng = lng2Rad - lng1Rad;
-        
         // Haversine formula
-        double a = Math.sin(deltaLat / 2) * Math.sin(deltaLat / 2) +
-                   Math.cos(lat1Rad) * Math.cos(lat2Rad) *
-                   Math.sin(deltaLng / 2) * Math.sin(deltaLng / 2);
-        
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        
-        // Calculate distance
-        double distance = EARTH_RADIUS * c;
+        double distance = DistanceKernel.haversine(lat1, lng1, lat2, lng2);
         
         // Ensure minimum distance of 0.5 km for any ride
         distance = Math.max(0.5, distance);
@@ -0,0 +1,165 @@
+package com.taxi.booking.util;
+
+import java.util.Arrays;
+
+/**
+ * Batch distance kernels over struct-of-arrays coordinate buffers.
+ *
+ * Candidate ranking uses the equirectangular approximation: with cos(lat) of the query
+ * point precomputed, each point costs two multiplies and an add, and the loop body has
+ * no calls so the JIT can unroll and vectorise it. At city scale the approximation
+ * stays within a fraction of a percent of the great-circle distance, so exact haversine
+ * is only evaluated for the final top-k.
+ */
+public final class DistanceKernel {
+
+    public static final double EARTH_RADIUS_KM = 6371;
+
+    public static final double KM_PER_DEGREE = EARTH_RADIUS_KM * Math.PI / 180;
+
+    private DistanceKernel() {
+    }
+
+    /**
+     * Kilometres per degree of longitude at the given latitude
+     */
+    public static double kmPerLngDegree(double lat) {
+        return KM_PER_DEGREE * Math.cos(Math.toRadians(lat));
+    }
+
+    /**
+     * Squared equirectangular distances (km²) from the query point to points [from, to).
+     * @param kmPerLngDegree {@link #kmPerLngDegree(double)} of the query latitude
+     */
+    public static void approxSquaredDistances(double lat, double lng, double kmPerLngDegree,
+                                              double[] lats, double[] lngs, int from, int to, double[] out) {
+        for (int i = from; i < to; i++) {
+            double dLng = lngs[i] - lng;
+            // The shorter way round, so points across the antimeridian are not a globe away
+            dLng -= 360 * Math.rint(dLng / 360);
+            double dx = dLng * kmPerLngDegree;
+            double dy = (lats[i] - lat) * KM_PER_DEGREE;
+            out[i] = dx * dx + dy * dy;
+        }
+    }
+
+    /**
+     * Exact great-circle distances (km) from the query point to points [from, to)
+     */
+    public static void haversineDistances(double lat, double lng, double[] lats, double[] lngs,
+                                          int from, int to, double[] out) {
+        double cosLat = Math.cos(Math.toRadians(lat));
+        for (int i = from; i < to; i++) {
+            out[i] = haversine(lat, lng, cosLat, lats[i], lngs[i]);
+        }
+    }
+
+    /**
+     * Exact great-circle distance (km) with cos(lat1) supplied by the caller
+     */
+    public static double haversine(double lat1, double lng1, double cosLat1, double lat2, double lng2) {
+        double sinHalfLat = Math.sin(Math.toRadians(lat2 - lat1) / 2);
+        double sinHalfLng = Math.sin(Math.toRadians(lng2 - lng1) / 2);
+        double a = sinHalfLat * sinHalfLat
+                + cosLat1 * Math.cos(Math.toRadians(lat2)) * sinHalfLng * sinHalfLng;
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    public static double haversine(double lat1, double lng1, double lat2, double lng2) {
+        return haversine(lat1, lng1, Math.cos(Math.toRadians(lat1)), lat2, lng2);
+    }
+
+    /**
+     * Bounded max-heap of (candidate index, distance) pairs keeping the k smallest distances.
+     * Reusable across queries; holds primitives only.
+     */
+    public static final class TopK {
+
+        private int[] indices = new int[16];
+        private double[] keys = new double[16];
+        private int size;
+        private int k;
+
+        public TopK reset(int k) {
+            this.k = k;
+            this.size = 0;
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isFull() {
+            return size == k;
+        }
+
+        /**
+         * Largest distance currently held; only meaningful when non-empty
+         */
+        public double worst() {
+            return keys[0];
+        }
+
+        public void offer(int index, double key) {
+            if (size < k) {
+                if (size == indices.length) {
+                    int capacity = (int) Math.min((long) size * 2, Integer.MAX_VALUE - 8);
+                    indices = Arrays.copyOf(indices, capacity);
+                    keys = Arrays.copyOf(keys, capacity);
+                }
+                int child = size++;
+                while (child > 0) {
+                    int parent = (child - 1) >>> 1;
+                    if (keys[parent] >= key) {
+                        break;
+                    }
+                    indices[child] = indices[parent];
+                    keys[child] = keys[parent];
+                    child = parent;
+                }
+                indices[child] = index;
+                keys[child] = key;
+            } else if (key < keys[0]) {
+                siftDown(index, key);
+            }
+        }
+
+        /**
+         * Empty the heap into out, nearest first.
+         * @return number of indices written
+         */
+        public int drainAscending(int[] out) {
+            int count = size;
+            for (int i = count - 1; i >= 0; i--) {
+                out[i] = indices[0];
+                int lastIndex = indices[--size];
+                double lastKey = keys[size];
+                if (size > 0) {
+                    siftDown(lastIndex, lastKey);
+                }
+            }
+            return count;
+        }
+
+        private void siftDown(int index, double key) {
+            int parent = 0;
+            int half = size >>> 1;
+            while (parent < half) {
+                int child = 2 * parent + 1;
+                int right = child + 1;
+                if (right < size && keys[right] > keys[child]) {
+                    child = right;
+                }
+                if (key >= keys[child]) {
+                    break;
+                }
+                indices[parent] = indices[child];
+                keys[parent] = keys[child];
+                parent = child;
+            }
+            indices[parent] = index;
+            keys[parent] = key;
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package com.taxi.booking.util;
+
+import com.taxi.booking.model.DriverLocation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
+
+/**
+ * Geohash-bucketed index of current driver positions.
+ *
+ * Every driver is held in exactly one cell. A location update that crosses a
+ * cell boundary removes the driver from the old bucket and adds it to the new
+ * one, so repeated pings never accumulate and empty buckets are dropped.
+ *
+ * Each driver has one slot, holding its latest location and a reference to its
+ * presence state word (see DriverPresenceRegistry). Searches can filter on that word
+ * as they collect candidates, without a lookup per driver.
+ */
+public class DriverSpatialIndex {
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final int precision;
+    private final double cellHeight;
+    private final double cellWidth;
+
+    // Long geohash cell -> (driver ID -> slot) for drivers currently in that cell
+    private final Map<Long, Map<String, Slot>> cells = new ConcurrentHashMap<>();
+
+    // Driver ID -> slot, which records the cell the driver is currently indexed under
+    private final Map<String, Slot> driverSlots = new ConcurrentHashMap<>();
+
+    // Bounding rows and columns of every cell a driver has been indexed in
+    private final AtomicLong minRow = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong maxRow = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong minCol = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong maxCol = new AtomicLong(Long.MIN_VALUE);
+
+    public DriverSpatialIndex(int precision) {
+        this.precision = precision;
+        this.cellHeight = GeohashUtils.cellHeight(precision);
+        this.cellWidth = GeohashUtils.cellWidth(precision);
+    }
+
+    /**
+     * Insert or move a driver.
+     * @return the long geohash cell the driver is now indexed under
+     */
+    public long update(DriverLocation location) {
+        return update(location, null);
+    }
+
+    /**
+     * Insert or move a driver.
+     * @param state the driver's presence state word, read by filtered searches; null keeps the current one
+     * @return the long geohash cell the driver is now indexed under
+     */
+    public long update(DriverLocation location, AtomicLong state) {
+        String driverId = location.getDriverId();
+        long cell = GeohashUtils.encodeLong(location.getLat(), location.getLng(), precision);
+
+        driverSlots.compute(driverId, (id, slot) -> {
+            if (slot != null && slot.cell == cell) {
+                // Same cell: the bucket already holds this slot
+                slot.location = location;
+                if (state != null) {
+                    slot.state = state;
+                }
+                return slot;
+            }
+            if (slot != null) {
+                removeFromCell(slot.cell, id);
+            } else {
+                slot = new Slot();
+            }
+            extend(cell);
+            slot.cell = cell;
+            slot.location = location;
+            if (state != null) {
+                slot.state = state;
+            }
+            Slot moved = slot;
+            cells.compute(cell, (key, bucket) -> {
+                if (bucket == null) {
+                    bucket = new ConcurrentHashMap<>();
+                }
+                bucket.put(id, moved);
+                return bucket;
+            });
+            return slot;
+        });
+
+        return cell;
+    }
+
+    /**
+     * Remove a driver from the index.
+     * @return true if the driver was indexed
+     */
+    public boolean remove(String driverId) {
+        boolean[] removed = new boolean[1];
+        driverSlots.computeIfPresent(driverId, (id, slot) -> {
+            removeFromCell(slot.cell, id);
+            removed[0] = true;
+            return null;
+        });
+        return removed[0];
+    }
+
+    /**
+     * Remove a driver only if its presence state word reads 0: it expired and has not been
+     * indexed again with a new word since
+     * @return true if the driver was removed
+     */
+    public boolean removeIfExpired(String driverId) {
+        boolean[] removed = new boolean[1];
+        driverSlots.computeIfPresent(driverId, (id, slot) -> {
+            if (slot.state() != 0) {
+                return slot;
+            }
+            removeFromCell(slot.cell, id);
+            removed[0] = true;
+            return null;
+        });
+        return removed[0];
+    }
+
+    public Optional<DriverLocation> get(String driverId) {
+        Slot slot = driverSlots.get(driverId);
+        return slot == null ? Optional.empty() : Optional.of(slot.location);
+    }
+
+    /**
+     * Drivers currently indexed under the given geohash cell
+     */
+    public List<DriverLocation> driversInCell(long cell) {
+        Map<String, Slot> bucket = cells.get(cell);
+        if (bucket == null) {
+            return Collections.emptyList();
+        }
+        List<DriverLocation> drivers = new ArrayList<>(bucket.size());
+        for (Slot slot : bucket.values()) {
+            drivers.add(slot.location);
+        }
+        return drivers;
+    }
+
+    public List<DriverLocation> nearest(double lat, double lng, int k, double maxDistanceKm) {
+        return nearest(lat, lng, k, maxDistanceKm, null);
+    }
+
+    /**
+     * k-nearest-driver search expanding outward in square rings of neighbouring cells.
+     *
+     * Ring 0 is the cell holding the query point, ring r the cells at Chebyshev distance r
+     * from it. The search stops once k drivers are held and the k-th best distance is no
+     * greater than the minimum possible distance to the next ring, once that ring lies
+     * entirely beyond maxDistanceKm, or once the rings cover every row and column a driver
+     * has been indexed in. Columns wrap around the antimeridian; each is visited at the
+     * ring of its shorter way round, so once the rings span the globe none is visited twice.
+     * Rows and columns out of maxDistanceKm's reach, and rows no driver has been indexed
+     * in, are skipped.
+     *
+     * Candidates are copied into struct-of-arrays buffers and ranked with the
+     * equirectangular kernel; exact haversine only runs for the final top-k.
+     *
+     * @param filter tested against each driver's presence state word (0 if it has none)
+     *               before it becomes a candidate; null accepts every driver
+     * @return up to k matching drivers within maxDistanceKm, nearest first
+     */
+    public List<DriverLocation> nearest(double lat, double lng, int k, double maxDistanceKm, LongPredicate filter) {
+        if (k <= 0 || driverSlots.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Scratch scratch = SCRATCH.get();
+        DistanceKernel.TopK best = scratch.topK.reset(k);
+        int count = 0;
+
+        long baseRow = (long) Math.floor((lat + 90) / cellHeight);
+        long baseCol = (long) Math.floor((lng + 180) / cellWidth);
+        double cellSouth = baseRow * cellHeight - 90;
+        double cellWest = baseCol * cellWidth - 180;
+        double kmPerLngDegree = DistanceKernel.kmPerLngDegree(lat);
+        double maxSquared = maxDistanceKm * maxDistanceKm;
+        long rowCount = Math.round(180 / cellHeight);
+        long colCount = Math.round(360 / cellWidth);
+        // Column offsets from baseCol in [westmostOffset, eastmostOffset] reach each column once
+        long eastmostOffset = colCount / 2;
+        long westmostOffset = -(colCount - 1 - eastmostOffset);
+        // Rows and column offsets that can hold a driver within maxDistanceKm, in the ranking metric.
+        // Near the poles a ring's east and west edges barely move, so without these limits
+        // the rings would scan row after row of the globe.
+        long rowLimit = reach(maxDistanceKm, cellHeight * DistanceKernel.KM_PER_DEGREE, rowCount);
+        long colLimit = reach(maxDistanceKm, cellWidth * kmPerLngDegree, colCount);
+        long firstRow = Math.max(Math.max(0, minRow.get()), baseRow - rowLimit);
+        long lastRow = Math.min(Math.min(rowCount - 1, maxRow.get()), baseRow + rowLimit);
+        long westmost = Math.max(westmostOffset, -colLimit);
+        long eastmost = Math.min(eastmostOffset, colLimit);
+        long lastRing = Math.min(lastRing(baseRow, baseCol, colCount), Math.max(rowLimit, colLimit));
+
+        try {
+            for (int ring = 0; ; ring++) {
+                if (ring > 0) {
+                    // Closest any point of this ring can be: distance to the edge of the block of inner rings
+                    int inner = ring - 1;
+                    double south = (lat - (cellSouth - inner * cellHeight)) * DistanceKernel.KM_PER_DEGREE;
+                    double north = ((cellSouth + (inner + 1) * cellHeight) - lat) * DistanceKernel.KM_PER_DEGREE;
+                    double west = (lng - (cellWest - inner * cellWidth)) * kmPerLngDegree;
+                    double east = ((cellWest + (inner + 1) * cellWidth) - lng) * kmPerLngDegree;
+                    double ringMinDistance = Math.min(Math.min(south, north), Math.min(west, east));
+
+                    if (ringMinDistance > maxDistanceKm) {
+                        break;
+                    }
+                    if (best.isFull() && best.worst() <= ringMinDistance * ringMinDistance) {
+                        break;
+                    }
+                    if (ring > lastRing) {
+                        break; // the rings already cover every cell a driver has been in
+                    }
+                }
+
+                int ringStart = count;
+                for (long row = Math.max(baseRow - ring, firstRow); row <= Math.min(baseRow + ring, lastRow); row++) {
+                    if (ring == 0 || row == baseRow - ring || row == baseRow + ring) {
+                        for (long offset = Math.max(-ring, westmost); offset <= Math.min(ring, eastmost); offset++) {
+                            count = collect(scratch, row, baseCol + offset, filter, count);
+                        }
+                    } else {
+                        // Only the ring's two side cells; one past a limit was reached the other way round or is too far
+                        if (-ring >= westmost) {
+                            count = collect(scratch, row, baseCol - ring, filter, count);
+                        }
+                        if (ring <= eastmost) {
+                            count = collect(scratch, row, baseCol + ring, filter, count);
+                        }
+                    }
+                }
+
+                DistanceKernel.approxSquaredDistances(lat, lng, kmPerLngDegree,
+                        scratch.lats, scratch.lngs, ringStart, count, scratch.distances);
+                for (int i = ringStart; i < count; i++) {
+                    if (scratch.distances[i] <= maxSquared) {
+                        best.offer(i, scratch.distances[i]);
+                    }
+                }
+            }
+
+            // Exact distances for the survivors only, then fix up any near-tie reordering
+            int[] order = scratch.order(best.size());
+            int selected = best.drainAscending(order);
+            double cosLat = Math.cos(Math.toRadians(lat));
+            double[] exact = scratch.distances;
+            for (int i = 0; i < selected; i++) {
+                int candidate = order[i];
+                exact[candidate] = DistanceKernel.haversine(lat, lng, cosLat,
+                        scratch.lats[candidate], scratch.lngs[candidate]);
+            }
+            for (int i = 1; i < selected; i++) {
+                int candidate = order[i];
+                int j = i - 1;
+                while (j >= 0 && exact[order[j]] > exact[candidate]) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = candidate;
+            }
+
+            List<DriverLocation> result = new ArrayList<>(selected);
+            for (int i = 0; i < selected; i++) {
+                result.add(scratch.drivers[order[i]]);
+            }
+            return result;
+        } finally {
+            scratch.release(count);
+        }
+    }
+
+    public List<DriverLocation> snapshot() {
+        List<DriverLocation> all = new ArrayList<>(driverSlots.size());
+        for (Map<String, Slot> bucket : cells.values()) {
+            for (Slot slot : bucket.values()) {
+                all.add(slot.location);
+            }
+        }
+        return all;
+    }
+
+    public int size() {
+        return driverSlots.size();
+    }
+
+    public int cellCount() {
+        return cells.size();
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    private int collect(Scratch scratch, long row, long col, LongPredicate filter, int count) {
+        Map<String, Slot> bucket = cells.get(GeohashUtils.fromRowCol(row, col, precision));
+        return bucket != null ? scratch.append(bucket.values(), filter, count) : count;
+    }
+
+    // Rows or columns of cellKm each that maxDistanceKm can reach across, at most all cells of them
+    private static long reach(double maxDistanceKm, double cellKm, long cells) {
+        double reach = Math.ceil(maxDistanceKm / cellKm) + 1;
+        return reach < cells ? (long) reach : cells;
+    }
+
+    /**
+     * Ring beyond which no driver can be: the Chebyshev reach from the base cell to the
+     * farthest row and column ever indexed, a column's reach being its shorter way round
+     */
+    private long lastRing(long baseRow, long baseCol, long colCount) {
+        long rowReach = Math.max(Math.abs(minRow.get() - baseRow), Math.abs(maxRow.get() - baseRow));
+        long colReach = Math.max(Math.abs(minCol.get() - baseCol), Math.abs(maxCol.get() - baseCol));
+        return Math.max(rowReach, Math.min(colReach, colCount / 2));
+    }
+
+    // Grow the indexed extent to include the cell; it never shrinks, which only makes lastRing conservative
+    private void extend(long cell) {
+        long row = GeohashUtils.row(cell);
+        long col = GeohashUtils.col(cell);
+        minRow.accumulateAndGet(row, Math::min);
+        maxRow.accumulateAndGet(row, Math::max);
+        minCol.accumulateAndGet(col, Math::min);
+        maxCol.accumulateAndGet(col, Math::max);
+    }
+
+    private void removeFromCell(long cell, String driverId) {
+        cells.computeIfPresent(cell, (key, bucket) -> {
+            bucket.remove(driverId);
+            return bucket.isEmpty() ? null : bucket;
+        });
+    }
+
+    /**
+     * One indexed driver. The cell is guarded by the driver's driverSlots entry; location
+     * and state are replaced in place and read without locking.
+     */
+    private static final class Slot {
+
+        long cell;
+        volatile DriverLocation location;
+        volatile AtomicLong state;
+
+        long state() {
+            AtomicLong current = state;
+            return current != null ? current.get() : 0L;
+        }
+    }
+
+    /**
+     * Per-thread candidate buffers, reused across queries so a search allocates only its result list
+     */
+    private static final class Scratch {
+
+        final DistanceKernel.TopK topK = new DistanceKernel.TopK();
+        DriverLocation[] drivers = new DriverLocation[256];
+        double[] lats = new double[256];
+        double[] lngs = new double[256];
+        double[] distances = new double[256];
+        int[] order = new int[256];
+
+        int append(Collection<Slot> bucket, LongPredicate filter, int count) {
+            for (Slot slot : bucket) {
+                if (filter != null && !filter.test(slot.state())) {
+                    continue;
+                }
+                DriverLocation driver = slot.location;
+                if (count == drivers.length) {
+                    int capacity = count * 2;
+                    drivers = Arrays.copyOf(drivers, capacity);
+                    lats = Arrays.copyOf(lats, capacity);
+                    lngs = Arrays.copyOf(lngs, capacity);
+                    distances = Arrays.copyOf(distances, capacity);
+                }
+                drivers[count] = driver;
+                lats[count] = driver.getLat();
+                lngs[count] = driver.getLng();
+                count++;
+            }
+            return count;
+        }
+
+        int[] order(int size) {
+            if (order.length < size) {
+                order = new int[size];
+            }
+            return order;
+        }
+
+        void release(int count) {
+            // Don't pin stale DriverLocation objects between queries
+            Arrays.fill(drivers, 0, count, null);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.taxi.booking.util;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded concurrent map whose entries expire a fixed time after they were added, or
+ * after going unread for the idle timeout, whichever comes first.
+ *
+ * Reads are lock-free: a hit costs one hash lookup plus, at most once per
+ * ACCESS_RESOLUTION_NANOS, a volatile write of the access time. Expired entries are
+ * removed when read and by purgeExpired(), which the owner calls on a schedule.
+ *
+ * An insert that takes the cache past maxSize evicts before it returns, under a lock
+ * only such inserts take. Eviction is an approximate LRU: it looks at the next
+ * EVICTION_SAMPLE entries from a hand that sweeps the map in turn and drops the first
+ * expired one, or else the one idle the longest, so it costs O(1) however full the
+ * cache is. The size only exceeds maxSize while concurrent inserts are trimming it.
+ *
+ * Hits, misses and evictions (expired or pushed out) are counted for metrics.
+ */
+public class ExpiringCache<K, V> {
+
+    // Access times closer together than this are not recorded; idle expiry is this coarse
+    private static final long ACCESS_RESOLUTION_NANOS = 1_000_000_000L;
+
+    // Entries looked at per eviction
+    private static final int EVICTION_SAMPLE = 8;
+
+    private final long ttlNanos;
+    private final long idleNanos;
+    private final int maxSize;
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private final Object evictionLock = new Object();
+
+    // Where the last eviction sample stopped; guarded by evictionLock
+    private Iterator<Map.Entry<K, Entry<V>>> evictionHand;
+
+    public ExpiringCache(Duration ttl, Duration idleTimeout, int maxSize) {
+        if (ttl.isNegative() || ttl.isZero() || idleTimeout.isNegative() || idleTimeout.isZero() || maxSize <= 0) {
+            throw new IllegalArgumentException("ttl, idleTimeout and maxSize must be positive");
+        }
+        this.ttlNanos = ttl.toNanos();
+        this.idleNanos = idleTimeout.toNanos();
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * The live value for key, refreshing its idle timer; null if absent or expired
+     */
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        long now = System.nanoTime();
+        if (entry.isExpired(now, ttlNanos, idleNanos)) {
+            if (entries.remove(key, entry)) {
+                evictions.increment();
+            }
+            misses.increment();
+            return null;
+        }
+        if (now - entry.lastAccess > ACCESS_RESOLUTION_NANOS) {
+            entry.lastAccess = now;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    public void put(K key, V value) {
+        if (entries.put(key, new Entry<>(value, System.nanoTime())) == null) {
+            trim();
+        }
+    }
+
+    /**
+     * Add value only if key has no live entry, e.g. for a value loaded on a miss that a
+     * concurrent put may already have superseded
+     * @return true if value was added
+     */
+    public boolean putIfAbsent(K key, V value) {
+        long now = System.nanoTime();
+        Entry<V> current = entries.get(key);
+        if (current != null && !current.isExpired(now, ttlNanos, idleNanos)) {
+            return false;
+        }
+        Entry<V> entry = new Entry<>(value, now);
+        if (current != null) {
+            return entries.replace(key, current, entry);
+        }
+        if (entries.putIfAbsent(key, entry) != null) {
+            return false;
+        }
+        trim();
+        return true;
+    }
+
+    /**
+     * @return the value removed, or null if there was none or it had expired
+     */
+    public V remove(K key) {
+        Entry<V> entry = entries.remove(key);
+        if (entry == null || entry.isExpired(System.nanoTime(), ttlNanos, idleNanos)) {
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Drop every expired entry
+     * @return how many were dropped
+     */
+    public int purgeExpired() {
+        long now = System.nanoTime();
+        int purged = 0;
+        Iterator<Entry<V>> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().isExpired(now, ttlNanos, idleNanos)) {
+                it.remove();
+                purged++;
+            }
+        }
+        evictions.add(purged);
+        return purged;
+    }
+
+    /**
+     * Number of entries, including expired ones not yet purged
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    // Called after adding a key: evict until back within maxSize
+    private void trim() {
+        if (entries.size() <= maxSize) {
+            return;
+        }
+        synchronized (evictionLock) {
+            while (entries.size() > maxSize) {
+                evictOne();
+            }
+        }
+    }
+
+    private void evictOne() {
+        long now = System.nanoTime();
+        Map.Entry<K, Entry<V>> idlest = null;
+        for (int i = 0; i < EVICTION_SAMPLE; i++) {
+            if (evictionHand == null || !evictionHand.hasNext()) {
+                evictionHand = entries.entrySet().iterator();
+                if (!evictionHand.hasNext()) {
+                    return;
+                }
+            }
+            Map.Entry<K, Entry<V>> candidate = evictionHand.next();
+            if (candidate.getValue().isExpired(now, ttlNanos, idleNanos)) {
+                idlest = candidate;
+                break;
+            }
+            // Subtract to compare, since nanoTime values may wrap
+            if (idlest == null || candidate.getValue().lastAccess - idlest.getValue().lastAccess < 0) {
+                idlest = candidate;
+            }
+        }
+        if (idlest != null && entries.remove(idlest.getKey(), idlest.getValue())) {
+            evictions.increment();
+        }
+    }
+
+    private static final class Entry<V> {
+
+        final V value;
+        final long createdAt;
+        volatile long lastAccess;
+
+        Entry(V value, long now) {
+            this.value = value;
+            this.createdAt = now;
+            this.lastAccess = now;
+        }
+
+        boolean isExpired(long now, long ttlNanos, long idleNanos) {
+            return now - createdAt > ttlNanos || now - lastAccess > idleNanos;
+        }
+    }
+}
@@ -1,63 +1,220 @@
 package com.taxi.booking.util;
 
+import java.util.Arrays;
+
+/**
+ * Geohash encoding.
+ *
+ * The primary form is a {@code long}: the 5 * precision interleaved lng/lat bits
+ * (lng first, most significant bit first, exactly as in the base32 string) shifted
+ * left by 4, with the precision (1..12) in the low 4 bits. Encoding, neighbours,
+ * parents and prefix ranges are plain bit operations on that value and allocate
+ * nothing; the base32 String form is only produced at the JSON boundary.
+ */
 public class GeohashUtils {
-    
+
+    public static final int MAX_PRECISION = 12;
+
     private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
-    
+
+    private static final int[] BASE32_INDEX = new int[128];
+
+    private static final int PRECISION_BITS = 4;
+    private static final long PRECISION_MASK = (1L << PRECISION_BITS) - 1;
+
+    static {
+        Arrays.fill(BASE32_INDEX, -1);
+        for (int i = 0; i < BASE32.length; i++) {
+            BASE32_INDEX[BASE32[i]] = i;
+        }
+    }
+
+    /**
+     * Encode a point as a long geohash at the given precision (1..12 characters)
+     */
+    public static long encodeLong(double lat, double lon, int precision) {
+        int latBits = latBits(precision);
+        int lonBits = lonBits(precision);
+        long row = quantize(lat + 90, 180, latBits);
+        long col = quantize(lon + 180, 360, lonBits);
+        return fromRowCol(row, col, precision);
+    }
+
+    /**
+     * Encode a point as a base32 geohash string. Prefer {@link #encodeLong} on hot paths.
+     */
     public static String encode(double lat, double lon, int precision) {
-        boolean even = true;
-        int bit = 0;
-        int ch = 0;
-        StringBuilder geohash = new StringBuilder();
-        
-        double[] latRange = {-90, 90};
-        double[] lonRange = {-180, 180};
-        
-        while (geohash.length() < precision) {
-            double mid;
-            
-            if (even) {
-                mid = (lonRange[0] + lonRange[1]) / 2;
-                if (lon > mid) {
-                    ch |= 16 >> bit;
-                    lonRange[0] = mid;
-                } else {
-                    lonRange[1] = mid;
-                }
-            } else {
-                mid = (latRange[0] + latRange[1]) / 2;
-                if (lat > mid) {
-                    ch |= 16 >> bit;
-                    latRange[0] = mid;
-                } else {
-                    latRange[1] = mid;
-                }
-            }
-            
-            even = !even;
-            
-            if (++bit == 5) {
-                geohash.append(BASE32[ch]);
-                bit = 0;
-                ch = 0;
+        return toBase32(encodeLong(lat, lon, precision));
+    }
+
+    public static int precision(long geohash) {
+        return (int) (geohash & PRECISION_MASK);
+    }
+
+    /**
+     * Interleaved lng/lat bits of the geohash, right-aligned
+     */
+    public static long bits(long geohash) {
+        return geohash >>> PRECISION_BITS;
+    }
+
+    /**
+     * Latitude row of the cell, counted from the south pole, at the geohash's own precision
+     */
+    public static long row(long geohash) {
+        int precision = precision(geohash);
+        long bits = bits(geohash);
+        return (precision * 5) % 2 == 0 ? compact(bits) : compact(bits >>> 1);
+    }
+
+    /**
+     * Longitude column of the cell, counted eastward from -180, at the geohash's own precision
+     */
+    public static long col(long geohash) {
+        int precision = precision(geohash);
+        long bits = bits(geohash);
+        return (precision * 5) % 2 == 0 ? compact(bits >>> 1) : compact(bits);
+    }
+
+    /**
+     * Build a long geohash from a cell row/column. Columns wrap around the antimeridian;
+     * rows outside the globe return -1.
+     */
+    public static long fromRowCol(long row, long col, int precision) {
+        long rowCount = 1L << latBits(precision);
+        long colCount = 1L << lonBits(precision);
+        if (row < 0 || row >= rowCount) {
+            return -1;
+        }
+        col = Math.floorMod(col, colCount);
+        long bits = (precision * 5) % 2 == 0
+                ? (spread(col) << 1) | spread(row)
+                : spread(col) | (spread(row) << 1);
+        return (bits << PRECISION_BITS) | precision;
+    }
+
+    /**
+     * Cell offset by the given number of rows (north) and columns (east), or -1 past a pole
+     */
+    public static long neighbour(long geohash, int dRow, int dCol) {
+        return fromRowCol(row(geohash) + dRow, col(geohash) + dCol, precision(geohash));
+    }
+
+    /**
+     * Enclosing cell at a coarser precision
+     */
+    public static long parent(long geohash, int precision) {
+        int shift = 5 * (precision(geohash) - precision);
+        return ((bits(geohash) >>> shift) << PRECISION_BITS) | precision;
+    }
+
+    /**
+     * Smallest long geohash at childPrecision lying inside the given cell.
+     * Together with {@link #rangeMax} this bounds every descendant cell.
+     */
+    public static long rangeMin(long geohash, int childPrecision) {
+        int shift = 5 * (childPrecision - precision(geohash));
+        return ((bits(geohash) << shift) << PRECISION_BITS) | childPrecision;
+    }
+
+    /**
+     * Largest long geohash at childPrecision lying inside the given cell
+     */
+    public static long rangeMax(long geohash, int childPrecision) {
+        int shift = 5 * (childPrecision - precision(geohash));
+        long bits = (bits(geohash) << shift) | ((1L << shift) - 1);
+        return (bits << PRECISION_BITS) | childPrecision;
+    }
+
+    /**
+     * Base32 string form, for JSON and logs only
+     */
+    public static String toBase32(long geohash) {
+        int precision = precision(geohash);
+        long bits = bits(geohash);
+        char[] chars = new char[precision];
+        for (int i = precision - 1; i >= 0; i--) {
+            chars[i] = BASE32[(int) (bits & 31)];
+            bits >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Parse a base32 geohash string into its long form
+     * @throws IllegalArgumentException if the string is empty, too long or not base32
+     */
+    public static long fromBase32(String geohash) {
+        int precision = geohash.length();
+        if (precision == 0 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Invalid geohash length: " + geohash);
+        }
+        long bits = 0;
+        for (int i = 0; i < precision; i++) {
+            char c = Character.toLowerCase(geohash.charAt(i));
+            int value = c < 128 ? BASE32_INDEX[c] : -1;
+            if (value < 0) {
+                throw new IllegalArgumentException("Invalid geohash character: " + geohash);
             }
+            bits = (bits << 5) | value;
         }
-        
-        return geohash.toString();
+        return (bits << PRECISION_BITS) | precision;
+    }
+
+    /**
+     * Height in degrees of latitude of a geohash cell at the given precision
+     */
+    public static double cellHeight(int precision) {
+        return 180.0 / (1L << latBits(precision));
+    }
+
+    /**
+     * Width in degrees of longitude of a geohash cell at the given precision
+     */
+    public static double cellWidth(int precision) {
+        return 360.0 / (1L << lonBits(precision));
     }
-    
+
+    /**
+     * Great-circle distance in kilometres
+     */
     public static double distance(double lat1, double lon1, double lat2, double lon2) {
-        final int R = 6371; // Earth's radius in kilometers
-        
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
-        
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-        
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        
-        return R * c;
-    }
-} 
\ No newline at end of file
+        return DistanceKernel.haversine(lat1, lon1, lat2, lon2);
+    }
+
+    private static int latBits(int precision) {
+        return (precision * 5) / 2;
+    }
+
+    private static int lonBits(int precision) {
+        return (precision * 5 + 1) / 2;
+    }
+
+    private static long quantize(double offset, double span, int bits) {
+        long cells = 1L << bits;
+        long index = (long) (offset / span * cells);
+        return Math.max(0, Math.min(cells - 1, index));
+    }
+
+    // Spread the low 32 bits of v so that bit i moves to bit 2i
+    private static long spread(long v) {
+        v &= 0xFFFFFFFFL;
+        v = (v | (v << 16)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v << 8)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v << 2)) & 0x3333333333333333L;
+        v = (v | (v << 1)) & 0x5555555555555555L;
+        return v;
+    }
+
+    // Inverse of spread: gather the even bits of v into the low 32 bits
+    private static long compact(long v) {
+        v &= 0x5555555555555555L;
+        v = (v | (v >>> 1)) & 0x3333333333333333L;
+        v = (v | (v >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v >>> 4)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v >>> 8)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v >>> 16)) & 0x00000000FFFFFFFFL;
+        return v;
+    }
+}
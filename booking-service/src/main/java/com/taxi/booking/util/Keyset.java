@@ -0,0 +1,56 @@
+package com.taxi.booking.util;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Request parameters for keyset-paginated lists, ordered by id descending.
+ *
+ * A page is "the next `limit` rows with an id below `before`", which the database answers
+ * with an index range scan however deep the page is, unlike OFFSET. A full page names
+ * the `before` of the next one in the NEXT_PAGE_HEADER response header; a page without
+ * it is the last.
+ */
+public final class Keyset {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+
+    public static final String NEXT_PAGE_HEADER = "X-Next-Before";
+
+    private Keyset() {
+    }
+
+    /**
+     * Upper bound for the ids on this page: the last id of the previous page, or unbounded for the first
+     */
+    public static Long before(Long before) {
+        return before != null ? before : Long.MAX_VALUE;
+    }
+
+    /**
+     * Requested page size clamped to 1..MAX_PAGE_SIZE
+     */
+    public static Limit limit(int limit) {
+        return Limit.of(size(limit));
+    }
+
+    /**
+     * A page as a response, with the id of its last row in NEXT_PAGE_HEADER if the page is full
+     */
+    public static <T> ResponseEntity<List<T>> page(List<T> items, int limit, Function<T, Long> id) {
+        if (items.isEmpty() || items.size() < size(limit)) {
+            return ResponseEntity.ok(items);
+        }
+        return ResponseEntity.ok()
+                .header(NEXT_PAGE_HEADER, String.valueOf(id.apply(items.get(items.size() - 1))))
+                .body(items);
+    }
+
+    private static int size(int limit) {
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+}
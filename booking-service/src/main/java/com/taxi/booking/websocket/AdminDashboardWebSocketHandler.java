@@ -0,0 +1,352 @@
+package com.taxi.booking.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taxi.booking.model.Booking;
+import com.taxi.booking.model.SessionPrincipal;
+import com.taxi.booking.model.User;
+import com.taxi.booking.model.UserProfile;
+import com.taxi.booking.repository.BookingRepository;
+import com.taxi.booking.repository.UserRepository;
+import com.taxi.booking.service.AdminStatsService;
+import com.taxi.booking.service.AuthService;
+import com.taxi.booking.util.AdminViews;
+import com.taxi.booking.util.Keyset;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Live admin dashboard.
+ *
+ * An admin authenticates with its session token, either as a "token" query parameter or
+ * in an AUTH message, and receives a SNAPSHOT: the current stats and the first keyset page
+ * of bookings, riders and drivers. Older rows are fetched with PAGE requests
+ * ({"type":"PAGE","list":"bookings","before":123}). After that the database is not
+ * touched for this admin again: booking and user changes are reported here after commit,
+ * coalesced per row, and each tick sends every admin the same DELTA frame holding the
+ * changed rows (in the REST endpoints' JSON shapes, or just the changed fields for bulk
+ * status updates) and the stats from AdminStatsService's counters.
+ *
+ * Each admin's frames are sent in order by one task at a time on a small send pool. An
+ * admin that falls MAX_QUEUED_FRAMES behind is disconnected rather than sent a gap; on
+ * reconnecting it gets a fresh snapshot.
+ */
+@Component
+public class AdminDashboardWebSocketHandler extends TextWebSocketHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(AdminDashboardWebSocketHandler.class);
+
+    private static final int MAX_QUEUED_FRAMES = 16;
+
+    @Value("${app.websocket.admin-flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    @Value("${app.websocket.admin-send-threads:2}")
+    private int sendThreads;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AdminStatsService adminStatsService;
+
+    // Session ID -> authenticated admin
+    private final Map<String, Admin> admins = new ConcurrentHashMap<>();
+
+    // Row ID -> fields changed since the last flush
+    private final Map<Long, Map<String, Object>> pendingBookings = new ConcurrentHashMap<>();
+    private final Map<Long, Map<String, Object>> pendingRiders = new ConcurrentHashMap<>();
+    private final Map<Long, Map<String, Object>> pendingDrivers = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService flusher;
+    private ExecutorService sendPool;
+
+    @PostConstruct
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(namedThreads("admin-dashboard-flush"));
+        sendPool = Executors.newFixedThreadPool(sendThreads, namedThreads("admin-dashboard-send"));
+        flusher.scheduleAtFixedRate(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdownNow();
+        sendPool.shutdownNow();
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        String token = extractToken(session);
+        if (token != null) {
+            authenticate(session, token, Keyset.DEFAULT_PAGE_SIZE);
+        }
+    }
+
+    @Override
+    public void handleTextMessage(WebSocketSession session, TextMessage message) {
+        try {
+            Map<String, Object> request = objectMapper.readValue(message.getPayload(), Map.class);
+            String type = (String) request.get("type");
+            int limit = request.get("limit") instanceof Number n ? n.intValue() : Keyset.DEFAULT_PAGE_SIZE;
+
+            if ("AUTH".equals(type)) {
+                authenticate(session, (String) request.get("token"), limit);
+            } else if ("PAGE".equals(type)) {
+                Admin admin = admins.get(session.getId());
+                if (admin == null) {
+                    reject(session);
+                    return;
+                }
+                String list = (String) request.get("list");
+                Long before = request.get("before") instanceof Number n ? n.longValue() : null;
+                admin.enqueue(() -> frame(Map.of("type", "PAGE", "list", list, "items", page(list, before, limit))));
+            }
+        } catch (Exception e) {
+            log.error("Error handling admin dashboard message", e);
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        admins.remove(session.getId());
+        log.info("Admin dashboard WebSocket connection closed: {}", session.getId());
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        log.error("Admin dashboard WebSocket transport error for session: {}", session.getId(), exception);
+    }
+
+    /**
+     * A booking was inserted or saved; called after commit
+     */
+    public void bookingChanged(Booking booking) {
+        merge(pendingBookings, booking.getId(), AdminViews.booking(booking));
+    }
+
+    /**
+     * A booking's status was changed by a bulk update; called after commit
+     * @param driverId the driver the update set, or null if it left the driver alone
+     */
+    public void bookingStatusChanged(Long bookingId, String status, String driverId) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("id", bookingId);
+        fields.put("status", status);
+        if (driverId != null) {
+            fields.put("driverId", driverId);
+        }
+        merge(pendingBookings, bookingId, fields);
+    }
+
+    /**
+     * A user was inserted or saved, e.g. a driver going online or offline; called after commit
+     */
+    public void userChanged(User user) {
+        if (user.getRole() == User.UserRole.DRIVER) {
+            merge(pendingDrivers, user.getId(), AdminViews.driver(UserProfile.of(user)));
+        } else if (user.getRole() == User.UserRole.RIDER) {
+            merge(pendingRiders, user.getId(), AdminViews.rider(UserProfile.of(user)));
+        }
+    }
+
+    public int adminCount() {
+        return admins.size();
+    }
+
+    void flush() {
+        try {
+            if (pendingBookings.isEmpty() && pendingRiders.isEmpty() && pendingDrivers.isEmpty()) {
+                return;
+            }
+            Map<String, Object> delta = new HashMap<>();
+            delta.put("type", "DELTA");
+            delta.put("bookings", drain(pendingBookings));
+            delta.put("riders", drain(pendingRiders));
+            delta.put("drivers", drain(pendingDrivers));
+            if (admins.isEmpty()) {
+                return;
+            }
+            delta.put("stats", stats());
+
+            // Serialised once, whatever the number of admins watching
+            TextMessage frame = frame(delta);
+            for (Admin admin : admins.values()) {
+                admin.enqueue(() -> frame);
+            }
+        } catch (Exception e) {
+            // Never let an exception cancel the scheduled flush
+            log.error("Error flushing admin dashboard deltas", e);
+        }
+    }
+
+    private void authenticate(WebSocketSession session, String token, int limit) {
+        SessionPrincipal user = authService.getCurrentUser(token);
+        if (user == null || !user.isAdmin()) {
+            reject(session);
+            return;
+        }
+        // Registered before the snapshot is read, so no change committed after the read is missed;
+        // a delta for a change the snapshot already includes is harmless
+        Admin admin = new Admin(session);
+        admins.put(session.getId(), admin);
+        admin.enqueue(() -> {
+            Map<String, Object> snapshot = new HashMap<>();
+            snapshot.put("type", "SNAPSHOT");
+            snapshot.put("stats", stats());
+            snapshot.put("bookings", page("bookings", null, limit));
+            snapshot.put("riders", page("riders", null, limit));
+            snapshot.put("drivers", page("drivers", null, limit));
+            return frame(snapshot);
+        });
+        log.info("Admin {} connected to dashboard WebSocket", user.username());
+    }
+
+    private void reject(WebSocketSession session) {
+        try {
+            session.sendMessage(new TextMessage("{\"type\":\"ERROR\",\"message\":\"Admin access required\"}"));
+            session.close(CloseStatus.POLICY_VIOLATION);
+        } catch (IOException e) {
+            log.debug("Error closing session {}", session.getId(), e);
+        }
+    }
+
+    private List<Map<String, Object>> page(String list, Long before, int limit) {
+        return switch (list) {
+            case "bookings" -> bookingRepository.findByIdLessThanOrderByIdDesc(Keyset.before(before), Keyset.limit(limit))
+                    .stream().map(AdminViews::booking).collect(Collectors.toList());
+            case "riders" -> userRepository.findProfilesByRoleAndIdLessThanOrderByIdDesc(User.UserRole.RIDER, Keyset.before(before), Keyset.limit(limit))
+                    .stream().map(AdminViews::rider).collect(Collectors.toList());
+            case "drivers" -> userRepository.findProfilesByRoleAndIdLessThanOrderByIdDesc(User.UserRole.DRIVER, Keyset.before(before), Keyset.limit(limit))
+                    .stream().map(AdminViews::driver).collect(Collectors.toList());
+            default -> throw new IllegalArgumentException("Unknown admin list: " + list);
+        };
+    }
+
+    private Map<String, Object> stats() {
+        Map<String, Object> stats = adminStatsService.snapshot();
+        stats.put("systemStatus", "OPERATIONAL");
+        stats.put("lastUpdated", LocalDateTime.now());
+        return stats;
+    }
+
+    private TextMessage frame(Map<String, Object> payload) {
+        try {
+            return new TextMessage(objectMapper.writeValueAsString(payload));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot serialise admin dashboard frame", e);
+        }
+    }
+
+    private static void merge(Map<Long, Map<String, Object>> pending, Long id, Map<String, Object> fields) {
+        // Copy on merge: the flush thread may be serialising the previous map
+        pending.merge(id, fields, (previous, changed) -> {
+            Map<String, Object> merged = new HashMap<>(previous);
+            merged.putAll(changed);
+            return merged;
+        });
+    }
+
+    private static List<Map<String, Object>> drain(Map<Long, Map<String, Object>> pending) {
+        List<Map<String, Object>> rows = new ArrayList<>(pending.size());
+        for (Long id : pending.keySet()) {
+            Map<String, Object> row = pending.remove(id);
+            if (row != null) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private String extractToken(WebSocketSession session) {
+        String query = session.getUri() != null ? session.getUri().getQuery() : null;
+        if (query != null && query.contains("token=")) {
+            return query.split("token=")[1].split("&")[0];
+        }
+        return null;
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * One authenticated admin: its frames are chained so they go out in order, one send at a time
+     */
+    private final class Admin {
+
+        private final WebSocketSession session;
+        private final AtomicInteger queued = new AtomicInteger();
+        private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+        Admin(WebSocketSession session) {
+            this.session = session;
+        }
+
+        synchronized void enqueue(Supplier<TextMessage> frame) {
+            if (queued.incrementAndGet() > MAX_QUEUED_FRAMES) {
+                log.warn("Closing slow admin dashboard session {}: {} frames behind", session.getId(), MAX_QUEUED_FRAMES);
+                close();
+                return;
+            }
+            tail = tail.thenRunAsync(() -> {
+                try {
+                    if (session.isOpen()) {
+                        session.sendMessage(frame.get());
+                    }
+                } catch (Exception e) {
+                    log.error("Error sending to admin dashboard session: {}", session.getId(), e);
+                } finally {
+                    queued.decrementAndGet();
+                }
+            }, sendPool);
+        }
+
+        private void close() {
+            admins.remove(session.getId(), this);
+            try {
+                session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException e) {
+                log.debug("Error closing session {}", session.getId(), e);
+            }
+        }
+    }
+}
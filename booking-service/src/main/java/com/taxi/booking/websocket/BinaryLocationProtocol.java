@@ -0,0 +1,63 @@
+package com.taxi.booking.websocket;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary sub-protocol for driver location uplinks on /ws/driver-location.
+ *
+ * Clients opt in by requesting the {@value #SUBPROTOCOL} WebSocket sub-protocol, and
+ * connect with the driver's session token as a "token" query parameter.
+ * All integers are big-endian.
+ *
+ * REGISTER (client -> server), once per session before its first ping:
+ *   u8 type = 1 | i64 epoch millis | UTF-8 driver ID
+ * The driver ID must be the one the token belongs to; otherwise the session is closed.
+ * The server replies with the driver's interned index:
+ *   u8 type = 1 | i32 driver index | UTF-8 driver ID
+ * The epoch becomes the session's timestamp base.
+ *
+ * PING (client -> server), 17 bytes:
+ *   u8 type = 2 | i32 driver index | i32 lat * 1e7 | i32 lng * 1e7 | u32 millis since epoch
+ * Pings for an index not registered on the same session are dropped.
+ *
+ * 1e7 quantisation keeps positions to about 1cm.
+ */
+public final class BinaryLocationProtocol {
+
+    public static final String SUBPROTOCOL = "v1.location.taxi";
+
+    public static final byte REGISTER = 1;
+    public static final byte PING = 2;
+
+    public static final int PING_LENGTH = 17;
+
+    // type + epoch + at least one byte of driver ID
+    public static final int MIN_REGISTER_LENGTH = 10;
+
+    private static final double SCALE = 1e7;
+
+    private BinaryLocationProtocol() {
+    }
+
+    public static int quantize(double degrees) {
+        return (int) Math.round(degrees * SCALE);
+    }
+
+    public static double dequantize(int value) {
+        return value / SCALE;
+    }
+
+    public static ByteBuffer registerAck(int driverIndex, String driverId) {
+        byte[] id = driverId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + id.length);
+        buffer.put(REGISTER).putInt(driverIndex).put(id);
+        return buffer.flip();
+    }
+
+    public static ByteBuffer ping(int driverIndex, double lat, double lng, long millisSinceEpoch) {
+        ByteBuffer buffer = ByteBuffer.allocate(PING_LENGTH);
+        buffer.put(PING).putInt(driverIndex).putInt(quantize(lat)).putInt(quantize(lng)).putInt((int) millisSinceEpoch);
+        return buffer.flip();
+    }
+}
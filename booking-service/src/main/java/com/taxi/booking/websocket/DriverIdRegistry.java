@@ -0,0 +1,81 @@
+package com.taxi.booking.websocket;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns driver IDs to small ints for the binary location protocol, and keeps the
+ * interned ID string per index, so a ping resolves its driver without allocating a String.
+ *
+ * Each intern is held until a matching release, normally by a session from REGISTER until
+ * it closes. A driver keeps its index while any session holds it; once the last one
+ * releases it the index is freed and handed to the next new driver.
+ */
+@Component
+public class DriverIdRegistry {
+
+    private final Map<String, Integer> indices = new ConcurrentHashMap<>();
+
+    // Index -> driver ID; written and replaced (never shrunk) under the lock, read without it
+    private volatile String[] driverIds = new String[1024];
+
+    // Index -> number of holders; only touched under the lock
+    private int[] holders = new int[1024];
+    private int size;
+    private final Deque<Integer> freed = new ArrayDeque<>();
+
+    /**
+     * Index of the driver, assigning one on first sight; held until released
+     */
+    public synchronized int intern(String driverId) {
+        Integer existing = indices.get(driverId);
+        if (existing != null) {
+            holders[existing]++;
+            return existing;
+        }
+        int index = freed.isEmpty() ? size++ : freed.pop();
+        String[] current = driverIds;
+        if (index == current.length) {
+            current = Arrays.copyOf(current, index * 2);
+            holders = Arrays.copyOf(holders, index * 2);
+        }
+        current[index] = driverId;
+        holders[index] = 1;
+        // Publish the array before the index so readers never see an index without its slot
+        driverIds = current;
+        indices.put(driverId, index);
+        return index;
+    }
+
+    /**
+     * Drop one hold on the driver's index, freeing it with the last
+     */
+    public synchronized void release(String driverId) {
+        Integer index = indices.get(driverId);
+        if (index == null || --holders[index] > 0) {
+            return;
+        }
+        indices.remove(driverId);
+        String[] current = driverIds;
+        current[index] = null;
+        driverIds = current;
+        freed.push(index);
+    }
+
+    /**
+     * The driver ID interned as index, or null for an index not currently assigned
+     */
+    public String driverId(int index) {
+        String[] current = driverIds;
+        return index >= 0 && index < current.length ? current[index] : null;
+    }
+
+    public int size() {
+        return indices.size();
+    }
+}
@@ -0,0 +1,432 @@
+package com.taxi.booking.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taxi.booking.model.DriverLocation;
+import com.taxi.booking.service.GeoMatchingService;
+import com.taxi.booking.util.GeohashUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coalescing fan-out of driver locations to map clients.
+ *
+ * Incoming pings only overwrite a per-driver latest-value slot. A fixed tick drains
+ * the slots and sends each subscriber one JSON array frame holding the changed drivers
+ * it can see. Each subscriber writes from a small send pool through its own bounded
+ * queue, so a slow client only delays itself: when its queue is full the oldest frame
+ * is dropped, and a client stuck in a single send for longer than the send time limit
+ * is disconnected.
+ *
+ * A new session sees the whole city. Once it subscribes to a bounding box or a set of
+ * geohash prefixes it is registered under those cells in a cell -> subscribers index,
+ * and each changed driver is routed by looking up the parents of the grid cell
+ * GeoMatchingService indexed it under, one map lookup per precision.
+ */
+@Component
+public class DriverLocationBroadcaster {
+
+    private static final Logger log = LoggerFactory.getLogger(DriverLocationBroadcaster.class);
+
+    private static final int MAX_QUEUED_FRAMES = 8;
+
+    private static final long SEND_TIME_LIMIT_MS = 5000;
+    
+    // A bounding box is covered by at most this many cells, at the finest precision that allows it
+    private static final int MAX_BBOX_CELLS = 64;
+
+    @Value("${app.websocket.location-flush-interval-ms:250}")
+    private long flushIntervalMs;
+
+    @Value("${app.websocket.location-send-threads:4}")
+    private int sendThreads;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Driver ID -> latest location received since the last flush
+    private final Map<String, Update> pending = new ConcurrentHashMap<>();
+
+    // Session ID -> subscriber
+    private final Map<String, Subscriber> subscribers = new ConcurrentHashMap<>();
+
+    // Subscribers without a subscription: they receive every driver
+    private final Set<Subscriber> citywide = ConcurrentHashMap.newKeySet();
+
+    // Long geohash (any precision up to the grid precision) -> subscribers covering that cell
+    private final Map<Long, Set<Subscriber>> cellSubscribers = new ConcurrentHashMap<>();
+
+    // Flush thread only: tags each routed driver so overlapping subscriptions don't duplicate it
+    private long routeStamp;
+
+    private ScheduledExecutorService flusher;
+    private ExecutorService sendPool;
+
+    @PostConstruct
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(namedThreads("driver-location-flush"));
+        sendPool = Executors.newFixedThreadPool(sendThreads, namedThreads("driver-location-send"));
+        flusher.scheduleAtFixedRate(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Driver location broadcaster started: flush every {}ms, {} send threads", flushIntervalMs, sendThreads);
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdownNow();
+        sendPool.shutdownNow();
+    }
+
+    public void subscribe(WebSocketSession session) {
+        Subscriber subscriber = new Subscriber(session);
+        subscribers.put(session.getId(), subscriber);
+        citywide.add(subscriber);
+    }
+
+    public void unsubscribe(WebSocketSession session) {
+        Subscriber subscriber = subscribers.remove(session.getId());
+        if (subscriber != null) {
+            subscriber.detach();
+        }
+    }
+
+    /**
+     * Limit a session to drivers inside the bounding box (degrees)
+     */
+    public void subscribeBoundingBox(WebSocketSession session, double south, double west, double north, double east) {
+        Subscriber subscriber = subscribers.get(session.getId());
+        if (subscriber != null) {
+            long[] cells = coverBoundingBox(south, west, north, east);
+            subscriber.setCells(cells);
+            log.debug("Session {} subscribed to bbox [{}, {}, {}, {}] as {} cells at precision {}",
+                    session.getId(), south, west, north, east, cells.length, GeohashUtils.precision(cells[0]));
+        }
+    }
+
+    /**
+     * Limit a session to drivers inside the given geohash cells. Prefixes longer than
+     * the matching grid precision are truncated to it.
+     * @throws IllegalArgumentException if a prefix is not a valid geohash
+     */
+    public void subscribeGeohashes(WebSocketSession session, Collection<String> geohashes) {
+        Subscriber subscriber = subscribers.get(session.getId());
+        if (subscriber != null) {
+            long[] cells = new long[geohashes.size()];
+            int i = 0;
+            for (String geohash : geohashes) {
+                long cell = GeohashUtils.fromBase32(geohash);
+                if (GeohashUtils.precision(cell) > GeoMatchingService.GRID_PRECISION) {
+                    cell = GeohashUtils.parent(cell, GeoMatchingService.GRID_PRECISION);
+                }
+                cells[i++] = cell;
+            }
+            subscriber.setCells(cells);
+            log.debug("Session {} subscribed to geohashes {}", session.getId(), geohashes);
+        }
+    }
+
+    /**
+     * Stop sending driver locations to a session without closing it
+     */
+    public void clearSubscription(WebSocketSession session) {
+        Subscriber subscriber = subscribers.get(session.getId());
+        if (subscriber != null) {
+            subscriber.setCells(new long[0]);
+        }
+    }
+
+    /**
+     * Record a driver's latest location; it goes out with the next flush
+     * @param cell the long geohash GeoMatchingService indexed the driver under
+     */
+    public void publish(DriverLocation location, long cell) {
+        pending.put(location.getDriverId(), new Update(location, cell));
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    void flush() {
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+            List<Update> batch = new ArrayList<>(pending.size());
+            Iterator<Update> it = pending.values().iterator();
+            while (it.hasNext()) {
+                batch.add(it.next());
+                it.remove();
+            }
+            if (subscribers.isEmpty()) {
+                return;
+            }
+
+            // Citywide sessions all get the same frame
+            StringBuilder citywideFrame = citywide.isEmpty() ? null : new StringBuilder("[");
+            for (Update update : batch) {
+                String json = objectMapper.writeValueAsString(update.location);
+                if (citywideFrame != null) {
+                    if (citywideFrame.length() > 1) {
+                        citywideFrame.append(',');
+                    }
+                    citywideFrame.append(json);
+                }
+                route(update.cell, json);
+            }
+
+            long now = System.currentTimeMillis();
+            TextMessage shared = citywideFrame == null ? null : new TextMessage(citywideFrame.append(']'));
+            for (Subscriber subscriber : subscribers.values()) {
+                TextMessage frame = subscriber.takeFrame();
+                if (frame != null) {
+                    subscriber.offer(frame, now);
+                } else if (shared != null && citywide.contains(subscriber)) {
+                    subscriber.offer(shared, now);
+                }
+            }
+        } catch (Exception e) {
+            // Never let an exception cancel the scheduled flush
+            log.error("Error flushing driver locations", e);
+        }
+    }
+
+    private void route(long cell, String json) {
+        if (cellSubscribers.isEmpty()) {
+            return;
+        }
+        long stamp = ++routeStamp;
+        int precision = GeohashUtils.precision(cell);
+        for (int p = 1; p <= precision; p++) {
+            Set<Subscriber> covering = cellSubscribers.get(GeohashUtils.parent(cell, p));
+            if (covering != null) {
+                for (Subscriber subscriber : covering) {
+                    subscriber.append(json, stamp);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cells covering the bounding box, at the finest precision (up to the grid precision)
+     * needing no more than MAX_BBOX_CELLS of them. West > east crosses the antimeridian.
+     */
+    static long[] coverBoundingBox(double south, double west, double north, double east) {
+        if (south > north) {
+            double swap = south;
+            south = north;
+            north = swap;
+        }
+        for (int precision = GeoMatchingService.GRID_PRECISION; ; precision--) {
+            long minRow = GeohashUtils.row(GeohashUtils.encodeLong(south, west, precision));
+            long maxRow = GeohashUtils.row(GeohashUtils.encodeLong(north, west, precision));
+            long minCol = GeohashUtils.col(GeohashUtils.encodeLong(south, west, precision));
+            long maxCol = GeohashUtils.col(GeohashUtils.encodeLong(south, east, precision));
+            long colCount = Math.round(360 / GeohashUtils.cellWidth(precision));
+            long cols = Math.floorMod(maxCol - minCol, colCount) + 1;
+            long rows = maxRow - minRow + 1;
+            if (rows * cols <= MAX_BBOX_CELLS || precision == 1) {
+                List<Long> cells = new ArrayList<>();
+                for (long row = minRow; row <= maxRow; row++) {
+                    for (long col = minCol; col < minCol + cols; col++) {
+                        cells.add(GeohashUtils.fromRowCol(row, col, precision));
+                    }
+                }
+                return cells.stream().mapToLong(Long::longValue).toArray();
+            }
+        }
+    }
+
+    private void removeSubscriber(Subscriber subscriber) {
+        subscribers.remove(subscriber.session.getId(), subscriber);
+        subscriber.detach();
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class Update {
+
+        final DriverLocation location;
+        final long cell;
+
+        Update(DriverLocation location, long cell) {
+            this.location = location;
+            this.cell = cell;
+        }
+    }
+
+    /**
+     * One connected map client: its subscribed cells, and a bounded frame queue drained
+     * by at most one send task at a time
+     */
+    private final class Subscriber {
+
+        private final WebSocketSession session;
+        private final ArrayDeque<TextMessage> queue = new ArrayDeque<>(MAX_QUEUED_FRAMES);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile long sendStartedAt;
+        private int dropped;
+
+        // Cells this subscriber is registered under; null while citywide or detached
+        private long[] cells;
+
+        // Flush thread only: the frame being assembled for this subscriber
+        private final StringBuilder frame = new StringBuilder();
+        private long lastStamp;
+
+        Subscriber(WebSocketSession session) {
+            this.session = session;
+        }
+
+        /**
+         * Re-register under the given cells; null means citywide
+         */
+        synchronized void setCells(long[] newCells) {
+            deregister();
+            cells = newCells;
+            if (newCells == null) {
+                citywide.add(this);
+                return;
+            }
+            citywide.remove(this);
+            for (long cell : newCells) {
+                cellSubscribers.computeIfAbsent(cell, key -> ConcurrentHashMap.newKeySet()).add(this);
+            }
+        }
+
+        synchronized void detach() {
+            deregister();
+            cells = null;
+            citywide.remove(this);
+        }
+
+        private void deregister() {
+            if (cells == null) {
+                return;
+            }
+            for (long cell : cells) {
+                cellSubscribers.computeIfPresent(cell, (key, set) -> {
+                    set.remove(this);
+                    return set.isEmpty() ? null : set;
+                });
+            }
+        }
+
+        void append(String json, long stamp) {
+            if (stamp == lastStamp) {
+                return;
+            }
+            lastStamp = stamp;
+            frame.append(frame.length() == 0 ? '[' : ',').append(json);
+        }
+
+        TextMessage takeFrame() {
+            if (frame.length() == 0) {
+                return null;
+            }
+            TextMessage message = new TextMessage(frame.append(']'));
+            frame.setLength(0);
+            return message;
+        }
+
+        void offer(TextMessage frame, long now) {
+            long startedAt = sendStartedAt;
+            if (startedAt != 0 && now - startedAt > SEND_TIME_LIMIT_MS) {
+                log.warn("Closing slow driver location session {}: send blocked for {}ms",
+                        session.getId(), now - startedAt);
+                close();
+                return;
+            }
+
+            synchronized (queue) {
+                if (queue.size() == MAX_QUEUED_FRAMES) {
+                    queue.pollFirst();
+                    if (dropped++ == 0) {
+                        log.warn("Driver location session {} is falling behind, dropping oldest frames", session.getId());
+                    }
+                }
+                queue.addLast(frame);
+            }
+            if (draining.compareAndSet(false, true)) {
+                sendPool.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            do {
+                TextMessage frame;
+                while ((frame = poll()) != null) {
+                    if (!session.isOpen()) {
+                        removeSubscriber(this);
+                        return;
+                    }
+                    send(frame);
+                }
+                draining.set(false);
+                // Re-check: a frame offered just before the flag was cleared found it still set
+            } while (hasQueued() && draining.compareAndSet(false, true));
+        }
+
+        private TextMessage poll() {
+            synchronized (queue) {
+                return queue.pollFirst();
+            }
+        }
+
+        private boolean hasQueued() {
+            synchronized (queue) {
+                return !queue.isEmpty();
+            }
+        }
+
+        private void send(TextMessage frame) {
+            sendStartedAt = System.currentTimeMillis();
+            try {
+                session.sendMessage(frame);
+            } catch (IOException e) {
+                log.error("Error sending driver locations to session: {}", session.getId(), e);
+            } finally {
+                sendStartedAt = 0;
+            }
+        }
+
+        private void close() {
+            removeSubscriber(this);
+            try {
+                session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException e) {
+                log.debug("Error closing session {}", session.getId(), e);
+            }
+        }
+    }
+}
@@ -1,38 +1,90 @@
 package com.taxi.booking.websocket;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.taxi.booking.model.DriverLocation;
+import com.taxi.booking.model.SessionPrincipal;
+import com.taxi.booking.model.User;
+import com.taxi.booking.producer.DriverLocationProducer;
+import com.taxi.booking.service.AuthService;
 import com.taxi.booking.service.GeoMatchingService;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
-import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * Driver location uplink and map client feed.
+ *
+ * Sessions that negotiate {@link BinaryLocationProtocol#SUBPROTOCOL} are driver
+ * uplinks: their pings are decoded straight from the frame buffer and they receive no
+ * location broadcasts. An uplink authenticates with the driver's session token as a
+ * "token" query parameter, and may only register and ping as that driver; its interned
+ * driver ID is released when it closes. All other sessions speak JSON text and are fed by the
+ * {@link DriverLocationBroadcaster}.
+ */
 @Component
-public class DriverLocationWebSocketHandler extends TextWebSocketHandler {
+public class DriverLocationWebSocketHandler extends AbstractWebSocketHandler implements SubProtocolCapable {
     
     private static final Logger log = LoggerFactory.getLogger(DriverLocationWebSocketHandler.class);
     
-    private final List<WebSocketSession> sessions = new CopyOnWriteArrayList<>();
-    
     @Autowired
     private GeoMatchingService geoMatchingService;
     
+    @Autowired
+    private DriverLocationBroadcaster broadcaster;
+    
+    @Autowired
+    private DriverIdRegistry driverIdRegistry;
+    
+    @Autowired
+    private DriverLocationProducer driverLocationProducer;
+    
     @Autowired
     private ObjectMapper objectMapper;
     
+    @Autowired
+    private AuthService authService;
+    
+    private static final String EPOCH_ATTRIBUTE = "locationEpoch";
+    
+    // The driver the session's token belongs to, set on connect
+    private static final String DRIVER_ATTRIBUTE = "locationDriver";
+    
+    // The driver index registered on the session; only it may be pinged
+    private static final String INDEX_ATTRIBUTE = "locationDriverIndex";
+    
+    @Override
+    public List<String> getSubProtocols() {
+        return List.of(BinaryLocationProtocol.SUBPROTOCOL);
+    }
+    
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
-        sessions.add(session);
+        if (isBinary(session)) {
+            SessionPrincipal user = authService.getCurrentUser(extractToken(session));
+            if (user == null || user.role() != User.UserRole.DRIVER) {
+                reject(session);
+                return;
+            }
+            session.getAttributes().put(DRIVER_ATTRIBUTE, user.username());
+            log.info("Binary driver location uplink established for driver {}: {}", user.username(), session.getId());
+            return;
+        }
+        broadcaster.subscribe(session);
         log.info("WebSocket connection established: {}", session.getId());
     }
     
@@ -40,30 +92,140 @@ public class DriverLocationWebSocketHandler extends TextWebSocketHandler {
     public void handleTextMessage(WebSocketSession session, TextMessage message) {
         try {
             String payload = message.getPayload();
-            log.info("Received driver location: {}", payload);
+            
+            JsonNode json = objectMapper.readTree(payload);
+            if (json.has("type")) {
+                handleSubscription(session, json);
+                return;
+            }
             
             // Parse driver location and update GeoMatchingService
-            DriverLocation driverLocation = objectMapper.readValue(payload, DriverLocation.class);
-            geoMatchingService.updateDriverLocation(driverLocation);
+            DriverLocation driverLocation = objectMapper.treeToValue(json, DriverLocation.class);
+            long cell = geoMatchingService.updateDriverLocation(driverLocation);
             
-            // Broadcast driver location to all connected clients
-            for (WebSocketSession wsSession : sessions) {
-                try {
-                    if (wsSession.isOpen()) {
-                        wsSession.sendMessage(new TextMessage(payload));
-                    }
-                } catch (IOException e) {
-                    log.error("Error sending message to session: {}", wsSession.getId(), e);
-                }
-            }
+            // Coalesced and sent to subscribed clients on the next broadcast tick
+            broadcaster.publish(driverLocation, cell);
+            driverLocationProducer.publish(driverLocation);
         } catch (Exception e) {
             log.error("Error processing driver location message", e);
         }
     }
     
+    /**
+     * Viewport subscriptions. Without one a session receives every driver citywide.
+     *   {"type":"SUBSCRIBE","bbox":{"south":17.3,"west":78.3,"north":17.5,"east":78.6}}
+     *   {"type":"SUBSCRIBE","geohashes":["tepg","tepf"]}
+     *   {"type":"UNSUBSCRIBE"}
+     */
+    private void handleSubscription(WebSocketSession session, JsonNode json) {
+        String type = json.get("type").asText();
+        
+        if ("SUBSCRIBE".equals(type) && json.has("bbox")) {
+            JsonNode bbox = json.get("bbox");
+            broadcaster.subscribeBoundingBox(session,
+                    bbox.path("south").asDouble(), bbox.path("west").asDouble(),
+                    bbox.path("north").asDouble(), bbox.path("east").asDouble());
+        } else if ("SUBSCRIBE".equals(type) && json.has("geohashes")) {
+            List<String> geohashes = new ArrayList<>();
+            json.get("geohashes").forEach(geohash -> geohashes.add(geohash.asText()));
+            broadcaster.subscribeGeohashes(session, geohashes);
+        } else if ("UNSUBSCRIBE".equals(type)) {
+            broadcaster.clearSubscription(session);
+        } else {
+            log.warn("Unsupported driver location message from session {}: {}", session.getId(), json);
+        }
+    }
+    
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        ByteBuffer frame = message.getPayload();
+        try {
+            byte type = frame.get(frame.position());
+            if (type == BinaryLocationProtocol.PING && frame.remaining() == BinaryLocationProtocol.PING_LENGTH) {
+                handlePing(session, frame);
+            } else if (type == BinaryLocationProtocol.REGISTER && frame.remaining() >= BinaryLocationProtocol.MIN_REGISTER_LENGTH) {
+                handleRegister(session, frame);
+            } else {
+                log.warn("Malformed binary location frame from session {}: type={}, length={}",
+                        session.getId(), type, frame.remaining());
+            }
+        } catch (Exception e) {
+            log.error("Error processing binary driver location frame", e);
+        }
+    }
+    
+    private void handleRegister(WebSocketSession session, ByteBuffer frame) throws Exception {
+        frame.get();
+        long epoch = frame.getLong();
+        byte[] id = new byte[frame.remaining()];
+        frame.get(id);
+        String driverId = new String(id, StandardCharsets.UTF_8);
+        
+        if (!driverId.equals(session.getAttributes().get(DRIVER_ATTRIBUTE))) {
+            log.warn("Session {} tried to register driver {} it is not authenticated as", session.getId(), driverId);
+            reject(session);
+            return;
+        }
+        // A session's messages are handled one at a time; a repeat REGISTER only resets the epoch
+        Integer index = (Integer) session.getAttributes().get(INDEX_ATTRIBUTE);
+        if (index == null) {
+            index = driverIdRegistry.intern(driverId);
+            session.getAttributes().put(INDEX_ATTRIBUTE, index);
+        }
+        session.getAttributes().put(EPOCH_ATTRIBUTE, epoch);
+        session.sendMessage(new BinaryMessage(BinaryLocationProtocol.registerAck(index, driverId)));
+        log.debug("Registered driver {} as index {} on session {}", driverId, index, session.getId());
+    }
+    
+    private void handlePing(WebSocketSession session, ByteBuffer frame) {
+        int start = frame.position();
+        int index = frame.getInt(start + 1);
+        int lat = frame.getInt(start + 5);
+        int lng = frame.getInt(start + 9);
+        long delta = Integer.toUnsignedLong(frame.getInt(start + 13));
+        
+        Object epoch = session.getAttributes().get(EPOCH_ATTRIBUTE);
+        Object registered = session.getAttributes().get(INDEX_ATTRIBUTE);
+        String driverId = driverIdRegistry.driverId(index);
+        if (driverId == null || epoch == null || !(registered instanceof Integer own) || own != index) {
+            log.warn("Ping for driver index {} not registered on session {}", index, session.getId());
+            return;
+        }
+        
+        // A fresh object per ping: the index, broadcaster and producer hold on to it from other threads
+        DriverLocation location = new DriverLocation(driverId, BinaryLocationProtocol.dequantize(lat),
+                BinaryLocationProtocol.dequantize(lng), (Long) epoch + delta);
+        long cell = geoMatchingService.updateDriverLocation(location);
+        broadcaster.publish(location, cell);
+        driverLocationProducer.publish(location);
+    }
+    
+    private void reject(WebSocketSession session) {
+        try {
+            session.close(CloseStatus.POLICY_VIOLATION);
+        } catch (IOException e) {
+            log.debug("Error closing session {}", session.getId(), e);
+        }
+    }
+    
+    private String extractToken(WebSocketSession session) {
+        String query = session.getUri() != null ? session.getUri().getQuery() : null;
+        if (query != null && query.contains("token=")) {
+            return query.split("token=")[1].split("&")[0];
+        }
+        return null;
+    }
+    
+    private static boolean isBinary(WebSocketSession session) {
+        return BinaryLocationProtocol.SUBPROTOCOL.equals(session.getAcceptedProtocol());
+    }
+    
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
-        sessions.remove(session);
+        broadcaster.unsubscribe(session);
+        if (session.getAttributes().containsKey(INDEX_ATTRIBUTE)) {
+            driverIdRegistry.release((String) session.getAttributes().get(DRIVER_ATTRIBUTE));
+        }
         log.info("WebSocket connection closed: {}", session.getId());
     }
     
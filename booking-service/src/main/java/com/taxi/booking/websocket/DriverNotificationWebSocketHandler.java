@@ -2,7 +2,11 @@ package com.taxi.booking.websocket;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.taxi.booking.model.Booking;
+import com.taxi.booking.model.UserSummary;
 import com.taxi.booking.service.BookingService;
+import com.taxi.booking.service.DispatchEngine;
+import com.taxi.booking.service.DriverPresenceRegistry;
+import com.taxi.booking.service.UserCache;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,6 +15,8 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import java.io.IOException;
@@ -23,25 +29,46 @@ public class DriverNotificationWebSocketHandler extends TextWebSocketHandler {
     
     private static final Logger log = LoggerFactory.getLogger(DriverNotificationWebSocketHandler.class);
     
-    // Map to store driver sessions: driverId -> WebSocketSession
-    private final Map<String, WebSocketSession> driverSessions = new ConcurrentHashMap<>();
+    // A driver that has not taken a message for this long, or has this much queued, is disconnected
+    private static final int SEND_TIME_LIMIT_MS = 5000;
+    private static final int BUFFER_SIZE_LIMIT = 64 * 1024;
+    
+    // Map to store driver sessions: driverId -> WebSocketSession. Offers, withdrawals and
+    // assignment notices reach a driver from several threads at once, and the container
+    // allows one send at a time per session, so each session is wrapped to serialise them.
+    private final Map<String, ConcurrentWebSocketSessionDecorator> driverSessions = new ConcurrentHashMap<>();
     
     private BookingService bookingService;
     
+    private DispatchEngine dispatchEngine;
+    
     @Autowired
     public void setBookingService(BookingService bookingService) {
         this.bookingService = bookingService;
     }
     
+    @Autowired
+    public void setDispatchEngine(DispatchEngine dispatchEngine) {
+        this.dispatchEngine = dispatchEngine;
+    }
+    
     @Autowired
     private ObjectMapper objectMapper;
     
+    @Autowired
+    private DriverPresenceRegistry driverPresenceRegistry;
+    
+    @Autowired
+    private UserCache userCache;
+    
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
         // Extract driver ID from session attributes or query parameters
         String driverId = extractDriverId(session);
         if (driverId != null) {
-            driverSessions.put(driverId, session);
+            driverSessions.put(driverId, new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT_MS, BUFFER_SIZE_LIMIT));
+            driverPresenceRegistry.connected(driverId,
+                    userCache.findByUsername(driverId).map(UserSummary::vehicleType).orElse(null));
             log.info("Driver {} connected to notification WebSocket", driverId);
         } else {
             log.warn("Driver connection established without driver ID");
@@ -58,6 +85,11 @@ public class DriverNotificationWebSocketHandler extends TextWebSocketHandler {
             Map<String, Object> response = objectMapper.readValue(payload, Map.class);
             String type = (String) response.get("type");
             
+            // Any message from a driver counts as a heartbeat; HEARTBEAT carries nothing else
+            if (response.get("driverId") instanceof String driverId) {
+                driverPresenceRegistry.touch(driverId);
+            }
+            
             if ("RIDE_RESPONSE".equals(type)) {
                 handleRideResponse(response);
             }
@@ -76,8 +108,26 @@ public class DriverNotificationWebSocketHandler extends TextWebSocketHandler {
             log.info("Driver {} {} booking {}", driverId, action, bookingId);
             
             if ("ACCEPT".equals(action)) {
-                // Update booking status to ACCEPTED and assign driver
-                bookingService.assignDriver(bookingId, driverId);
+                // Only the first driver to accept gets the ride. The dispatch engine answers
+                // withdrawn and expired offers from memory; the conditional update picks the
+                // winner, and the engine withdraws the other offers only once it has.
+                DispatchEngine.AcceptResult offer = dispatchEngine.onAccept(bookingId, driverId);
+                boolean won = false;
+                try {
+                    won = offer != DispatchEngine.AcceptResult.TAKEN && bookingService.acceptBooking(bookingId, driverId);
+                } finally {
+                    if (offer == DispatchEngine.AcceptResult.OPEN) {
+                        dispatchEngine.acceptSettled(bookingId, driverId, won);
+                    }
+                }
+                if (!won) {
+                    sendToDriver(driverId, Map.of(
+                        "type", "RIDE_TAKEN",
+                        "bookingId", bookingId,
+                        "message", "Ride was accepted by another driver"
+                    ));
+                    return;
+                }
                 
                 // Send confirmation to driver
                 sendToDriver(driverId, Map.of(
@@ -90,8 +140,10 @@ public class DriverNotificationWebSocketHandler extends TextWebSocketHandler {
                 notifyRider(bookingId, "ACCEPTED", driverId);
                 
             } else if ("REJECT".equals(action)) {
-                // Update booking status to REJECTED
-                bookingService.updateBookingStatus(bookingId, "REJECTED");
+                // A dispatched booking moves on to the next drivers; only untracked ones are marked REJECTED
+                if (!dispatchEngine.onReject(bookingId, driverId)) {
+                    bookingService.rejectBooking(bookingId, driverId);
+                }
                 
                 // Send confirmation to driver
                 sendToDriver(driverId, Map.of(
@@ -134,15 +186,17 @@ public class DriverNotificationWebSocketHandler extends TextWebSocketHandler {
     }
     
     public void sendToDriver(String driverId, Map<String, Object> message) {
-        WebSocketSession session = driverSessions.get(driverId);
+        ConcurrentWebSocketSessionDecorator session = driverSessions.get(driverId);
         if (session != null && session.isOpen()) {
             try {
                 String json = objectMapper.writeValueAsString(message);
                 session.sendMessage(new TextMessage(json));
                 log.debug("📤 Message sent to driver {}: {}", driverId, json);
-            } catch (IOException e) {
+            } catch (IOException | SessionLimitExceededException e) {
                 log.error("❌ Error sending message to driver {}", driverId, e);
-                driverSessions.remove(driverId);
+                if (driverSessions.remove(driverId, session)) {
+                    driverPresenceRegistry.disconnected(driverId);
+                }
             }
         } else {
             log.warn("⚠️ Driver {} not connected to WebSocket - cannot send notification", driverId);
@@ -168,7 +222,12 @@ public class DriverNotificationWebSocketHandler extends TextWebSocketHandler {
     
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
-        driverSessions.entrySet().removeIf(entry -> entry.getValue().equals(session));
+        // Only if this is still the driver's current session; a reconnect may have replaced it
+        for (Map.Entry<String, ConcurrentWebSocketSessionDecorator> entry : driverSessions.entrySet()) {
+            if (entry.getValue().getDelegate().equals(session) && driverSessions.remove(entry.getKey(), entry.getValue())) {
+                driverPresenceRegistry.disconnected(entry.getKey());
+            }
+        }
         log.info("Driver WebSocket connection closed: {}", session.getId());
     }
     
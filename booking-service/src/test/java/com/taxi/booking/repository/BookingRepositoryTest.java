@@ -0,0 +1,113 @@
+package com.taxi.booking.repository;
+
+import com.taxi.booking.model.Booking;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+class BookingRepositoryTest {
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void firstAcceptWinsAndLaterAcceptsUpdateNothing() {
+        Long id = entityManager.persistAndFlush(booking("REQUESTED", null)).getId();
+
+        assertEquals(1, bookingRepository.acceptIfStatus(id, "driver-a", "REQUESTED"));
+        assertEquals(0, bookingRepository.acceptIfStatus(id, "driver-b", "REQUESTED"));
+        assertEquals(0, bookingRepository.acceptIfStatus(id, "driver-b", "ASSIGNED"));
+        assertEquals(0, bookingRepository.rejectIfStatus(id, "driver-a", "REQUESTED"));
+
+        entityManager.clear();
+        Booking booking = bookingRepository.findById(id).orElseThrow();
+        assertEquals("ACCEPTED", booking.getStatus());
+        assertEquals("driver-a", booking.getDriverId());
+    }
+
+    @Test
+    void assignedBookingIsOnlyAcceptedByItsDriver() {
+        Long id = entityManager.persistAndFlush(booking("ASSIGNED", "driver-a")).getId();
+
+        assertEquals(0, bookingRepository.acceptIfStatus(id, "driver-b", "ASSIGNED"));
+        assertEquals(0, bookingRepository.acceptIfStatus(id, "driver-a", "REQUESTED"));
+        assertEquals(1, bookingRepository.acceptIfStatus(id, "driver-a", "ASSIGNED"));
+        assertEquals("ACCEPTED", bookingRepository.findStatusById(id));
+    }
+
+    @Test
+    void cancelledBookingCannotBeAccepted() {
+        Long id = entityManager.persistAndFlush(booking("CANCELLED", null)).getId();
+
+        assertEquals(0, bookingRepository.acceptIfStatus(id, "driver-a", "REQUESTED"));
+        assertEquals(0, bookingRepository.acceptIfStatus(id, "driver-a", "ASSIGNED"));
+        assertEquals("CANCELLED", bookingRepository.findStatusById(id));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void concurrentAcceptsHaveExactlyOneWinner() throws Exception {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        Long id = transaction.execute(status -> bookingRepository.save(booking("REQUESTED", null)).getId());
+        int drivers = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(drivers);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < drivers; i++) {
+                String driverId = "driver-" + i;
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return transaction.execute(status -> bookingRepository.acceptIfStatus(id, driverId, "REQUESTED"));
+                }));
+            }
+            start.countDown();
+
+            String winner = null;
+            int won = 0;
+            for (int i = 0; i < drivers; i++) {
+                if (results.get(i).get(10, TimeUnit.SECONDS) == 1) {
+                    winner = "driver-" + i;
+                    won++;
+                }
+            }
+            assertEquals(1, won);
+            assertEquals(winner, bookingRepository.findById(id).orElseThrow().getDriverId());
+        } finally {
+            pool.shutdownNow();
+            bookingRepository.deleteById(id);
+        }
+    }
+
+    private static Booking booking(String status, String driverId) {
+        Booking booking = new Booking();
+        booking.setRiderId("rider-1");
+        booking.setPickupLocation("17.385,78.4867");
+        booking.setDestination("17.44,78.38");
+        booking.setStatus(status);
+        booking.setDriverId(driverId);
+        return booking;
+    }
+}
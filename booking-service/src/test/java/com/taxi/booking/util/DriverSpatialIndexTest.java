@@ -0,0 +1,170 @@
+package com.taxi.booking.util;
+
+import com.taxi.booking.model.DriverLocation;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DriverSpatialIndexTest {
+
+    private static final int PRECISION = 6;
+
+    private static final int[] KS = {1, 5, 20};
+    private static final double[] RADII_KM = {0.5, 2, 5, 20};
+
+    @Test
+    void nearestMatchesBruteForceInACity() {
+        Random random = new Random(11);
+        DriverSpatialIndex index = new DriverSpatialIndex(PRECISION);
+        List<DriverLocation> fleet = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            fleet.add(driver("d" + i, 17.385 + (random.nextDouble() - 0.5) * 0.4, 78.4867 + (random.nextDouble() - 0.5) * 0.4));
+        }
+        fleet.forEach(index::update);
+
+        for (int q = 0; q < 200; q++) {
+            double lat = 17.385 + (random.nextDouble() - 0.5) * 0.5;
+            double lng = 78.4867 + (random.nextDouble() - 0.5) * 0.5;
+            assertMatchesBruteForce(index, fleet, lat, lng, null, null);
+        }
+    }
+
+    @Test
+    void nearestFindsDriversAcrossTheAntimeridian() {
+        Random random = new Random(13);
+        DriverSpatialIndex index = new DriverSpatialIndex(PRECISION);
+        List<DriverLocation> fleet = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            double lng = 179.8 + random.nextDouble() * 0.4;
+            fleet.add(driver("d" + i, -17.7 + (random.nextDouble() - 0.5) * 0.4, lng > 180 ? lng - 360 : lng));
+        }
+        fleet.forEach(index::update);
+
+        for (int q = 0; q < 100; q++) {
+            double lng = 179.9 + random.nextDouble() * 0.2;
+            assertMatchesBruteForce(index, fleet, -17.7 + (random.nextDouble() - 0.5) * 0.3, lng > 180 ? lng - 360 : lng, null, null);
+        }
+        List<DriverLocation> east = index.nearest(-17.7, 179.9999, 1_000, 20);
+        assertTrue(east.stream().anyMatch(d -> d.getLng() < 0), "no driver found west of the antimeridian");
+    }
+
+    @Test
+    void nearestMatchesBruteForceNearThePoles() {
+        Random random = new Random(17);
+        DriverSpatialIndex index = new DriverSpatialIndex(PRECISION);
+        List<DriverLocation> fleet = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            fleet.add(driver("n" + i, 89.9 + random.nextDouble() * 0.1, 10 + random.nextDouble()));
+            fleet.add(driver("s" + i, -89.9 - random.nextDouble() * 0.1, -20 + random.nextDouble()));
+        }
+        fleet.forEach(index::update);
+
+        for (int q = 0; q < 50; q++) {
+            assertMatchesBruteForce(index, fleet, 89.95 + random.nextDouble() * 0.05, 10 + random.nextDouble(), null, null);
+            assertMatchesBruteForce(index, fleet, -89.95 - random.nextDouble() * 0.05, -20 + random.nextDouble(), null, null);
+        }
+    }
+
+    @Test
+    void nearestOnlyCountsDriversPassingTheFilter() {
+        Random random = new Random(19);
+        DriverSpatialIndex index = new DriverSpatialIndex(PRECISION);
+        List<DriverLocation> fleet = new ArrayList<>();
+        Map<String, Long> states = new HashMap<>();
+        for (int i = 0; i < 1_000; i++) {
+            DriverLocation driver = driver("d" + i, 17.385 + (random.nextDouble() - 0.5) * 0.2, 78.4867 + (random.nextDouble() - 0.5) * 0.2);
+            long state = random.nextInt(3);
+            fleet.add(driver);
+            states.put(driver.getDriverId(), state);
+            index.update(driver, new AtomicLong(state));
+        }
+        LongPredicate available = state -> state == 1;
+
+        for (int q = 0; q < 100; q++) {
+            double lat = 17.385 + (random.nextDouble() - 0.5) * 0.2;
+            double lng = 78.4867 + (random.nextDouble() - 0.5) * 0.2;
+            assertMatchesBruteForce(index, fleet, lat, lng, available, states);
+        }
+    }
+
+    @Test
+    void movedDriverIsOnlyFoundAtItsNewPosition() {
+        DriverSpatialIndex index = new DriverSpatialIndex(PRECISION);
+        index.update(driver("d1", 17.385, 78.4867));
+        index.update(driver("d2", 17.386, 78.4868));
+        index.update(driver("d1", 17.5, 78.6));
+
+        assertEquals(2, index.size());
+        assertEquals(List.of("d2"), ids(index.nearest(17.385, 78.4867, 10, 1)));
+        assertEquals(List.of("d1"), ids(index.nearest(17.5, 78.6, 10, 1)));
+
+        index.remove("d1");
+        assertEquals(List.of(), ids(index.nearest(17.5, 78.6, 10, 1)));
+        assertEquals(1, index.size());
+    }
+
+    private static void assertMatchesBruteForce(DriverSpatialIndex index, List<DriverLocation> fleet, double lat, double lng,
+                                                LongPredicate filter, Map<String, Long> states) {
+        for (int k : KS) {
+            for (double radiusKm : RADII_KM) {
+                List<DriverLocation> found = filter == null
+                        ? index.nearest(lat, lng, k, radiusKm)
+                        : index.nearest(lat, lng, k, radiusKm, filter);
+                String query = String.format("k=%d radius=%.1f at %.5f,%.5f", k, radiusKm, lat, lng);
+
+                assertEquals(bruteForce(fleet, lat, lng, k, radiusKm, filter, states), new HashSet<>(ids(found)), query);
+                for (int i = 1; i < found.size(); i++) {
+                    assertTrue(distance(lat, lng, found.get(i - 1)) <= distance(lat, lng, found.get(i)), query + " not nearest first");
+                }
+            }
+        }
+    }
+
+    /**
+     * The k drivers within radiusKm by the equirectangular distance the index ranks candidates by
+     */
+    private static Set<String> bruteForce(List<DriverLocation> fleet, double lat, double lng, int k, double radiusKm,
+                                          LongPredicate filter, Map<String, Long> states) {
+        List<DriverLocation> candidates = fleet.stream()
+                .filter(driver -> filter == null || filter.test(states.get(driver.getDriverId())))
+                .collect(Collectors.toList());
+        double[] lats = candidates.stream().mapToDouble(DriverLocation::getLat).toArray();
+        double[] lngs = candidates.stream().mapToDouble(DriverLocation::getLng).toArray();
+        double[] squared = new double[candidates.size()];
+        DistanceKernel.approxSquaredDistances(lat, lng, DistanceKernel.kmPerLngDegree(lat), lats, lngs, 0, candidates.size(), squared);
+
+        List<Integer> within = new ArrayList<>();
+        for (int i = 0; i < squared.length; i++) {
+            if (squared[i] <= radiusKm * radiusKm) {
+                within.add(i);
+            }
+        }
+        within.sort(Comparator.comparingDouble(i -> squared[i]));
+        return within.stream().limit(k).map(i -> candidates.get(i).getDriverId()).collect(Collectors.toSet());
+    }
+
+    private static double distance(double lat, double lng, DriverLocation driver) {
+        return DistanceKernel.haversine(lat, lng, driver.getLat(), driver.getLng());
+    }
+
+    private static List<String> ids(List<DriverLocation> drivers) {
+        return drivers.stream().map(DriverLocation::getDriverId).collect(Collectors.toList());
+    }
+
+    private static DriverLocation driver(String id, double lat, double lng) {
+        return new DriverLocation(id, lat, lng);
+    }
+}
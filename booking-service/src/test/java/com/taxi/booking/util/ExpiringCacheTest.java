@@ -0,0 +1,122 @@
+package com.taxi.booking.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExpiringCacheTest {
+
+    private static final Duration LONG = Duration.ofMinutes(10);
+
+    @Test
+    void insertsNeverLeaveItOverMaxSize() {
+        ExpiringCache<Integer, String> cache = new ExpiringCache<>(LONG, LONG, 100);
+        for (int i = 0; i < 1_000; i++) {
+            cache.put(i, "v" + i);
+            assertTrue(cache.size() <= 100, "size " + cache.size() + " after " + (i + 1) + " inserts");
+        }
+        assertEquals(100, cache.size());
+        assertEquals(900, cache.evictionCount());
+        assertEquals("v999", cache.get(999));
+    }
+
+    @Test
+    void concurrentInsertsSettleWithinMaxSize() throws InterruptedException {
+        ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(LONG, LONG, 500);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    int key = ThreadLocalRandom.current().nextInt(50_000);
+                    if (i % 2 == 0) {
+                        cache.put(key, key);
+                    } else {
+                        cache.putIfAbsent(key, key);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(cache.size() <= 500, "size " + cache.size());
+    }
+
+    @Test
+    void entriesExpireAfterTheTtlEvenWhenRead() throws InterruptedException {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(Duration.ofMillis(300), LONG, 10);
+        cache.put("a", "1");
+        Thread.sleep(150);
+        assertEquals("1", cache.get("a"));
+        Thread.sleep(250);
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    void entriesExpireWhenLeftUnread() throws InterruptedException {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(LONG, Duration.ofMillis(300), 10);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        Thread.sleep(400);
+        assertEquals(2, cache.purgeExpired());
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void readsKeepAnEntryAlivePastTheIdleTimeout() throws InterruptedException {
+        // Access times are recorded at most once a second, so the idle timeout must be longer
+        ExpiringCache<String, String> cache = new ExpiringCache<>(LONG, Duration.ofMillis(1_500), 10);
+        cache.put("a", "1");
+        Thread.sleep(1_100);
+        assertEquals("1", cache.get("a"));
+        Thread.sleep(1_100);
+        assertEquals("1", cache.get("a"), "read within the idle timeout of the previous read");
+        Thread.sleep(1_700);
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    void putIfAbsentOnlyReplacesAnExpiredEntry() throws InterruptedException {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(Duration.ofMillis(200), LONG, 10);
+        assertTrue(cache.putIfAbsent("a", "1"));
+        assertFalse(cache.putIfAbsent("a", "2"));
+        assertEquals("1", cache.get("a"));
+        Thread.sleep(300);
+        assertTrue(cache.putIfAbsent("a", "3"));
+        assertEquals("3", cache.get("a"));
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(LONG, LONG, 10);
+        cache.put("a", "1");
+        cache.get("a");
+        cache.get("a");
+        cache.get("b");
+        assertEquals(2, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertEquals("1", cache.remove("a"));
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    void rejectsNonPositiveSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new ExpiringCache<>(Duration.ZERO, LONG, 10));
+        assertThrows(IllegalArgumentException.class, () -> new ExpiringCache<>(LONG, Duration.ofSeconds(-1), 10));
+        assertThrows(IllegalArgumentException.class, () -> new ExpiringCache<>(LONG, LONG, 0));
+    }
+}
@@ -0,0 +1,96 @@
+package com.taxi.booking.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashedWheelTimerTest {
+
+    // A small wheel, so longer delays take several rounds
+    private final HashedWheelTimer timer = new HashedWheelTimer("test-timer", 10, TimeUnit.MILLISECONDS, 8, Runnable::run);
+
+    @AfterEach
+    void stop() {
+        timer.stop();
+    }
+
+    @Test
+    void neverFiresBeforeItsDelay() throws InterruptedException {
+        int count = 200;
+        CountDownLatch fired = new CountDownLatch(count);
+        Queue<String> early = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < count; i++) {
+            long delayMillis = i % 250;
+            long scheduledAt = System.nanoTime();
+            timer.newTimeout(() -> {
+                long elapsed = System.nanoTime() - scheduledAt;
+                if (elapsed < TimeUnit.MILLISECONDS.toNanos(delayMillis)) {
+                    early.add(delayMillis + " ms timeout fired after " + elapsed + " ns");
+                }
+                fired.countDown();
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(fired.await(5, TimeUnit.SECONDS), "not every timeout fired");
+        assertTrue(early.isEmpty(), early.toString());
+        assertEquals(0, timer.pendingTimeouts());
+    }
+
+    @Test
+    void firesWithinAFewTicksOfItsDeadline() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        long scheduledAt = System.nanoTime();
+        timer.newTimeout(fired::countDown, 100, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - scheduledAt);
+        assertTrue(elapsedMillis >= 100 && elapsedMillis < 1_000, "fired after " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void cancelledTimeoutNeverRuns() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        HashedWheelTimer.Timeout cancelled = timer.newTimeout(runs::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+        // Cancelled once the worker has placed it on the wheel
+        HashedWheelTimer.Timeout placed = timer.newTimeout(runs::incrementAndGet, 150, TimeUnit.MILLISECONDS);
+        CountDownLatch marker = new CountDownLatch(1);
+        timer.newTimeout(marker::countDown, 300, TimeUnit.MILLISECONDS);
+
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel(), "second cancel");
+        assertTrue(cancelled.isCancelled());
+        Thread.sleep(60);
+        assertTrue(placed.cancel());
+
+        assertTrue(marker.await(5, TimeUnit.SECONDS));
+        assertEquals(0, runs.get());
+        assertFalse(cancelled.isExpired());
+        assertEquals(0, timer.pendingTimeouts());
+    }
+
+    @Test
+    void expiredTimeoutCannotBeCancelled() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(fired::countDown, 20, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    void rejectsTimeoutsOnceStopped() {
+        timer.stop();
+        assertThrows(IllegalStateException.class, () -> timer.newTimeout(() -> { }, 10, TimeUnit.MILLISECONDS));
+    }
+}
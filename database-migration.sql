@@ -49,4 +49,30 @@ SELECT column_name, data_type, is_nullable
 FROM information_schema.columns 
 WHERE table_name = 'users' 
 AND column_name IN ('vehicle_type', 'license_number', 'status')
-ORDER BY column_name; 
\ No newline at end of file
+ORDER BY column_name; 
+
+-- Sequence-based ids (pooled-lo, allocation size 50) for bookings, users and outbox_events.
+-- Run before deploying the version that uses them: each sequence must start past the ids
+-- already handed out by the identity columns.
+DO $$
+DECLARE
+    t TEXT;
+BEGIN
+    FOREACH t IN ARRAY ARRAY['bookings', 'users', 'outbox_events'] LOOP
+        IF to_regclass(t) IS NOT NULL AND to_regclass(t || '_seq') IS NULL THEN
+            EXECUTE format('CREATE SEQUENCE %I INCREMENT BY 50', t || '_seq');
+            EXECUTE format('SELECT setval(%L, (SELECT COALESCE(MAX(id), 0) + 1 FROM %I), false)', t || '_seq', t);
+            RAISE NOTICE 'Created sequence %_seq', t;
+        ELSE
+            RAISE NOTICE 'Sequence %_seq already exists or table % is missing', t, t;
+        END IF;
+    END LOOP;
+END $$;
+
+-- Indexes for keyset-paginated lists (newest first, WHERE <column> = ? AND id < ? ORDER BY id DESC)
+-- and the admin booking counts. CONCURRENTLY avoids blocking writes while they build.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_bookings_rider_id ON bookings(rider_id, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_bookings_driver_id ON bookings(driver_id, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_bookings_status ON bookings(status, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_bookings_created_at ON bookings(created_at);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_role ON users(role, id);
\ No newline at end of file
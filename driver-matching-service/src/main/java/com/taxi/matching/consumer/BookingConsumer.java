@@ -1,18 +1,28 @@
 package com.taxi.matching.consumer;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.taxi.matching.service.GeoMatchingService;
+import com.taxi.matching.model.BookingRequested;
+import com.taxi.matching.model.DriverAssigned;
 import com.taxi.matching.model.DriverLocation;
 import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 @Component
 @ConditionalOnProperty(name = "app.kafka.enabled", havingValue = "true", matchIfMissing = false)
@@ -20,52 +30,73 @@ public class BookingConsumer {
     
     private static final Logger log = LoggerFactory.getLogger(BookingConsumer.class);
     
+    // Nearest drivers considered per booking, so bookings in one batch don't all get the same driver
+    private static final int CANDIDATES_PER_BOOKING = 5;
+    
+    private static final long PUBLISH_TIMEOUT_SECONDS = 30;
+    
     private final GeoMatchingService geoMatchingService;
-    private final ObjectMapper objectMapper;
+    private final ObjectReader bookingReader;
+    private final ObjectWriter assignmentWriter;
     private final KafkaTemplate<String, String> kafkaTemplate;
-
+    
+    // Drivers are only replicated this far into neighbouring regions, so a wider search would miss some
+    @Value("${app.matching.search-radius-km:10}")
+    private double searchRadiusKm = 10;
+    
     public BookingConsumer(GeoMatchingService geoMatchingService, ObjectMapper objectMapper, @Autowired(required = false) KafkaTemplate<String, String> kafkaTemplate) {
         this.geoMatchingService = geoMatchingService;
-        this.objectMapper = objectMapper;
+        this.bookingReader = objectMapper.readerFor(BookingRequested.class);
+        this.assignmentWriter = objectMapper.writerFor(DriverAssigned.class);
         this.kafkaTemplate = kafkaTemplate;
         log.info("BookingConsumer initialized with Kafka support: {}", kafkaTemplate != null);
     }
     
+    /**
+     * Match one poll's worth of booking events from a partition in a single pass over the
+     * spatial index. Called by RegionShardConsumer, which owns the listener.
+     *
+     * Returns once every assignment produced has been acknowledged by the broker, so the
+     * caller can commit the batch's offsets; if publishing fails it throws and the container
+     * redelivers the batch. Events that cannot be parsed are logged and skipped.
+     */
+    public void matchBookings(List<ConsumerRecord<String, String>> records) throws Exception {
+        log.debug("Received {} booking events", records.size());
+        
+        // Drivers already given a booking from this batch
+        Set<String> assignedDrivers = new HashSet<>();
+        List<CompletableFuture<?>> sends = new ArrayList<>(records.size());
+        
+        for (ConsumerRecord<String, String> record : records) {
+            try {
+                BookingRequested booking = bookingReader.readValue(record.value());
+                String driverId = matchDriver(booking, assignedDrivers);
+                if (driverId == null) {
+                    continue;
+                }
+                CompletableFuture<?> send = assignDriverToBooking(booking, driverId, record.key());
+                if (send != null) {
+                    sends.add(send);
+                }
+            } catch (Exception e) {
+                log.error("Skipping unprocessable booking event at {}-{}@{}", record.topic(), record.partition(), record.offset(), e);
+            }
+        }
+        
+        CompletableFuture.allOf(sends.toArray(new CompletableFuture[0])).get(PUBLISH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        log.info("Matched {} bookings, {} assignments published", records.size(), sends.size());
+    }
+    
     // Manual method to handle booking events (can be called from REST endpoints)
     public void handleBookingEvent(String bookingJson) {
         try {
             log.info("Received booking event: {}", bookingJson);
             
-            // Parse booking JSON
-            Map<String, Object> booking = objectMapper.readValue(bookingJson, Map.class);
-            
-            // Extract pickup location
-            String pickupLocation = (String) booking.get("pickupLocation");
-            String[] coords = pickupLocation.split(",");
-            double lat = Double.parseDouble(coords[0]);
-            double lng = Double.parseDouble(coords[1]);
+            BookingRequested booking = bookingReader.readValue(bookingJson);
             
-            // First try to find nearest driver within reasonable distance
-            var nearestDriver = geoMatchingService.findNearestDriver(lat, lng);
-            
-            if (nearestDriver.isPresent()) {
-                log.info("Found nearest driver {} for booking {}", 
-                        nearestDriver.get().getDriverId(), booking.get("id"));
-                assignDriverToBooking(booking, nearestDriver.get().getDriverId());
-            } else {
-                // If no nearby driver, assign any available driver
-                List<DriverLocation> allDrivers = geoMatchingService.getAllDrivers();
-                if (!allDrivers.isEmpty()) {
-                    // Assign the first available driver
-                    String assignedDriverId = allDrivers.get(0).getDriverId();
-                    log.info("No nearby drivers found. Assigning available driver {} to booking {}", 
-                            assignedDriverId, booking.get("id"));
-                    assignDriverToBooking(booking, assignedDriverId);
-                } else {
-                    log.warn("No drivers available for booking {}. Creating a demo driver assignment.", booking.get("id"));
-                    // Create a demo driver assignment for testing purposes
-                    assignDriverToBooking(booking, "demo-driver");
-                }
+            String driverId = matchDriver(booking, new HashSet<>());
+            if (driverId != null) {
+                assignDriverToBooking(booking, driverId, null);
             }
             
         } catch (Exception e) {
@@ -73,31 +104,48 @@ public class BookingConsumer {
         }
     }
     
-    private void assignDriverToBooking(Map<String, Object> booking, String driverId) {
-        try {
-            // Create driver assignment event with additional booking details
-            Map<String, Object> assignment = Map.of(
-                "bookingId", booking.get("id"),
-                "driverId", driverId,
-                "status", "ASSIGNED",
-                "timestamp", System.currentTimeMillis(),
-                "distance", booking.get("distance") != null ? booking.get("distance") : 5.0,
-                "duration", booking.get("duration") != null ? booking.get("duration") : 10.0,
-                "price", booking.get("price") != null ? booking.get("price") : 100.0
-            );
-            
-            String assignmentJson = objectMapper.writeValueAsString(assignment);
-            
-            // Send to driver-assignment topic if Kafka is available
-            if (kafkaTemplate != null) {
-                kafkaTemplate.send("driver-assignments", assignmentJson);
-                log.info("Sent driver assignment: {}", assignmentJson);
-            } else {
-                log.info("Kafka not available. Driver assignment logged: {}", assignmentJson);
+    /**
+     * Nearest driver to the pickup that is not in assignedDrivers, which it is then added to.
+     * If every nearby driver is already taken by this batch the nearest one is reused and the
+     * booking service's first-accept-wins check settles it.
+     * @return null if no driver is within the search radius
+     */
+    private String matchDriver(BookingRequested booking, Set<String> assignedDrivers) {
+        // Ring search widens from the pickup out to the search radius, nearest first
+        List<DriverLocation> candidates = geoMatchingService.findNearestDrivers(
+                booking.pickupLat(), booking.pickupLng(), CANDIDATES_PER_BOOKING, searchRadiusKm);
+        
+        for (DriverLocation candidate : candidates) {
+            if (assignedDrivers.add(candidate.getDriverId())) {
+                log.info("Found nearest driver {} for booking {}", candidate.getDriverId(), booking.id());
+                return candidate.getDriverId();
             }
-            
-        } catch (Exception e) {
-            log.error("Error creating driver assignment", e);
         }
+        
+        if (!candidates.isEmpty()) {
+            log.info("Nearby drivers all assigned in this batch. Reusing nearest driver {} for booking {}",
+                    candidates.get(0).getDriverId(), booking.id());
+            return candidates.get(0).getDriverId();
+        }
+        
+        log.warn("No drivers within {} km of booking {}; leaving it unassigned", searchRadiusKm, booking.id());
+        return null;
+    }
+    
+    /**
+     * @return the pending send, or null if Kafka is not available
+     */
+    private CompletableFuture<?> assignDriverToBooking(BookingRequested booking, String driverId, String key) throws Exception {
+        // Create driver assignment event with the booking's fare details
+        String assignmentJson = assignmentWriter.writeValueAsString(DriverAssigned.of(booking, driverId));
+        
+        // Send to driver-assignment topic if Kafka is available, keeping the booking's region key
+        if (kafkaTemplate != null) {
+            CompletableFuture<?> send = kafkaTemplate.send("driver-assignments", key, assignmentJson);
+            log.info("Sent driver assignment: {}", assignmentJson);
+            return send;
+        }
+        log.info("Kafka not available. Driver assignment logged: {}", assignmentJson);
+        return null;
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
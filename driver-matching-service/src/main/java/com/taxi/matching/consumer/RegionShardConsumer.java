@@ -0,0 +1,211 @@
+package com.taxi.matching.consumer;
+
+import com.taxi.matching.service.DriverShardService;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The matcher's single Kafka listener, subscribed to driver-locations and booking-events.
+ *
+ * Both topics are partitioned by region with the same partition count, and one consumer
+ * subscribed to both gets the same partition numbers of each (range assignment). So the
+ * instance that matches a region's bookings also holds that region's drivers, including
+ * those the booking service replicates in from just across its borders, and no instance
+ * needs the whole city. Within a poll, locations are applied before bookings are
+ * matched.
+ *
+ * On assignment the driver-locations partitions are replayed from the beginning to rebuild
+ * the shard's index; on revocation their drivers are dropped. The topic is compacted, so a
+ * replay is one record per driver. Until a partition has been replayed up to the end offset
+ * seen at assignment, bookings of the same region are held back (and not committed) rather
+ * than matched against a half-built index. As an ApplicationRunner it also keeps the service
+ * from reporting ready until the first assignment has been rebuilt.
+ */
+@Component
+@ConditionalOnProperty(name = "app.kafka.enabled", havingValue = "true", matchIfMissing = false)
+public class RegionShardConsumer implements ConsumerSeekAware, ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(RegionShardConsumer.class);
+
+    public static final String DRIVER_LOCATIONS_TOPIC = "driver-locations";
+
+    private final DriverShardService driverShardService;
+    private final BookingConsumer bookingConsumer;
+    private final ConsumerFactory<String, String> consumerFactory;
+
+    @Value("${app.kafka.bootstrap-timeout-seconds:30}")
+    private long bootstrapTimeoutSeconds = 30;
+
+    // driver-locations partition being replayed -> end offset to reach
+    private final Map<TopicPartition, Long> rebuilding = new ConcurrentHashMap<>();
+
+    // Partition number -> bookings waiting for that partition's drivers to be rebuilt
+    private final Map<Integer, List<ConsumerRecord<String, String>>> deferredBookings = new ConcurrentHashMap<>();
+
+    // Released once every partition of the first assignment has been rebuilt
+    private final CountDownLatch initialRebuild = new CountDownLatch(1);
+
+    public RegionShardConsumer(DriverShardService driverShardService, BookingConsumer bookingConsumer,
+                               ConsumerFactory<String, String> consumerFactory) {
+        this.driverShardService = driverShardService;
+        this.bookingConsumer = bookingConsumer;
+        this.consumerFactory = consumerFactory;
+    }
+
+    @KafkaListener(topics = {DRIVER_LOCATIONS_TOPIC, "booking-events"}, groupId = "matcher", batch = "true",
+            concurrency = "${app.kafka.booking-partitions:6}")
+    public void handleRecords(List<ConsumerRecord<String, String>> records, Acknowledgment acknowledgment,
+                              Consumer<?, ?> consumer) throws Exception {
+        List<ConsumerRecord<String, String>> bookings = new ArrayList<>();
+        for (ConsumerRecord<String, String> record : records) {
+            if (!DRIVER_LOCATIONS_TOPIC.equals(record.topic())) {
+                bookings.add(record);
+                continue;
+            }
+            try {
+                driverShardService.apply(record);
+            } catch (Exception e) {
+                log.error("Skipping unprocessable driver location at {}-{}@{}", record.topic(), record.partition(), record.offset(), e);
+            }
+        }
+
+        markRebuilt(consumer);
+
+        // Bookings held back earlier go first, keeping each region's order
+        List<ConsumerRecord<String, String>> ready = new ArrayList<>();
+        for (TopicPartition partition : consumer.assignment()) {
+            if (DRIVER_LOCATIONS_TOPIC.equals(partition.topic()) && !rebuilding.containsKey(partition)) {
+                List<ConsumerRecord<String, String>> released = deferredBookings.remove(partition.partition());
+                if (released != null) {
+                    ready.addAll(released);
+                }
+            }
+        }
+        for (ConsumerRecord<String, String> booking : bookings) {
+            if (rebuilding.containsKey(new TopicPartition(DRIVER_LOCATIONS_TOPIC, booking.partition()))) {
+                deferredBookings.computeIfAbsent(booking.partition(), p -> new ArrayList<>()).add(booking);
+            } else {
+                ready.add(booking);
+            }
+        }
+
+        if (!ready.isEmpty()) {
+            bookingConsumer.matchBookings(ready);
+        }
+
+        // Committing now would skip the held-back bookings on a restart; a later batch commits past them
+        if (!holdsDeferred(consumer)) {
+            acknowledgment.acknowledge();
+        }
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws InterruptedException {
+        long start = System.nanoTime();
+        if (initialRebuild.await(bootstrapTimeoutSeconds, TimeUnit.SECONDS)) {
+            log.info("Region shards rebuilt with {} drivers in {} ms", driverShardService.size(),
+                    (System.nanoTime() - start) / 1_000_000);
+        } else {
+            log.warn("Region shards not rebuilt after {}s; starting with {} drivers", bootstrapTimeoutSeconds, driverShardService.size());
+        }
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        List<TopicPartition> locationPartitions = assignments.keySet().stream()
+                .filter(partition -> DRIVER_LOCATIONS_TOPIC.equals(partition.topic()))
+                .toList();
+        registerRebuild(locationPartitions);
+        for (TopicPartition partition : locationPartitions) {
+            log.info("Rebuilding region shard {} from the start of {}", partition.partition(), DRIVER_LOCATIONS_TOPIC);
+            callback.seekToBeginning(partition.topic(), partition.partition());
+        }
+        if (rebuilding.isEmpty()) {
+            initialRebuild.countDown();
+        }
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        for (TopicPartition partition : partitions) {
+            if (DRIVER_LOCATIONS_TOPIC.equals(partition.topic())) {
+                rebuilding.remove(partition);
+                driverShardService.dropPartition(partition.partition());
+            } else {
+                // Uncommitted, so the new owner reads them again
+                deferredBookings.remove(partition.partition());
+            }
+        }
+    }
+
+    /**
+     * Remember the end offset each non-empty partition has to be replayed to.
+     * Offsets come from a short-lived consumer, as the seek callback has no access to them.
+     */
+    private void registerRebuild(List<TopicPartition> partitions) {
+        if (partitions.isEmpty()) {
+            return;
+        }
+        Properties properties = new Properties();
+        properties.setProperty("enable.auto.commit", "false");
+        try (Consumer<String, String> probe = consumerFactory.createConsumer(null, null, "-probe", properties)) {
+            Map<TopicPartition, Long> beginning = probe.beginningOffsets(partitions);
+            Map<TopicPartition, Long> end = probe.endOffsets(partitions);
+            for (TopicPartition partition : partitions) {
+                if (end.get(partition) > beginning.get(partition)) {
+                    rebuilding.put(partition, end.get(partition));
+                }
+            }
+        } catch (Exception e) {
+            // Without end offsets, match right away as before
+            log.warn("Could not read offsets of {}; not waiting for the shard rebuild: {}", DRIVER_LOCATIONS_TOPIC, e.getMessage());
+        }
+    }
+
+    // The listener threads share this bean; only look at this consumer's partitions
+    private boolean holdsDeferred(Consumer<?, ?> consumer) {
+        for (TopicPartition partition : consumer.assignment()) {
+            if (deferredBookings.containsKey(partition.partition())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void markRebuilt(Consumer<?, ?> consumer) {
+        if (rebuilding.isEmpty()) {
+            return;
+        }
+        for (TopicPartition partition : consumer.assignment()) {
+            Long end = rebuilding.get(partition);
+            if (end != null && consumer.position(partition) >= end) {
+                rebuilding.remove(partition);
+                log.info("Region shard {} rebuilt; {} drivers in this instance", partition.partition(), driverShardService.size());
+            }
+        }
+        if (rebuilding.isEmpty()) {
+            initialRebuild.countDown();
+        }
+    }
+}
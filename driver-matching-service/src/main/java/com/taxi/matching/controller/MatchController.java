@@ -55,11 +55,14 @@ public class MatchController {
     public ResponseEntity<List<DriverLocation>> findNearbyDrivers(
             @RequestParam double lat,
             @RequestParam double lng,
-            @RequestParam(defaultValue = "10") int maxDistance) {
+            @RequestParam(defaultValue = "10") int maxDistance,
+            @RequestParam(required = false) Integer k) {
         
-        log.info("Finding nearby drivers for lat={}, lng={}, maxDistance={}km", lat, lng, maxDistance);
+        log.info("Finding nearby drivers for lat={}, lng={}, maxDistance={}km, k={}", lat, lng, maxDistance, k);
         
-        List<DriverLocation> nearbyDrivers = geoMatchingService.findNearbyDrivers(lat, lng, maxDistance);
+        List<DriverLocation> nearbyDrivers = k != null
+                ? geoMatchingService.findNearestDrivers(lat, lng, k, maxDistance)
+                : geoMatchingService.findNearbyDrivers(lat, lng, maxDistance);
         
         return ResponseEntity.ok(nearbyDrivers);
     }
@@ -0,0 +1,26 @@
+package com.taxi.matching.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * driver-assignments payload: the matcher's choice of driver for a booking, with the fare
+ * details to show in the ride request. Unversioned events (v = 0) have the same fields.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record DriverAssigned(
+        int v,
+        long bookingId,
+        String driverId,
+        String status,
+        long timestamp,
+        double distance,
+        double duration,
+        double price) {
+
+    public static final int VERSION = 1;
+
+    public static DriverAssigned of(BookingRequested booking, String driverId) {
+        return new DriverAssigned(VERSION, booking.id(), driverId, "ASSIGNED", System.currentTimeMillis(),
+                booking.distance(), booking.duration(), booking.price());
+    }
+}
@@ -0,0 +1,119 @@
+package com.taxi.matching.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taxi.matching.model.DriverLocation;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps this instance's driver index limited to the regions it owns.
+ *
+ * Drivers arrive from the driver-locations partitions assigned to this matcher, which
+ * carry exactly the regions whose bookings it also consumes. A driver near a region
+ * border is published under every region within the border margin, so it can arrive
+ * here under several keys, possibly on several partitions. Each driver is remembered
+ * with the regions it is held under and the partition of each; it leaves the index when
+ * the last of them is tombstoned or its partition revoked. The copies of one publish are
+ * identical, and a copy older than the indexed location (read late from another
+ * partition) does not move the driver back. Per-driver updates run inside the map's
+ * compute so they never interleave.
+ *
+ * A location older than the location TTL counts as a tombstone. The booking service
+ * tombstones drivers that go away, but a replay can still turn up locations an instance
+ * lost before it could; those drivers are long gone.
+ */
+@Service
+public class DriverShardService {
+
+    private static final Logger log = LoggerFactory.getLogger(DriverShardService.class);
+
+    private final GeoMatchingService geoMatchingService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.kafka.driver-location-ttl-seconds:60}")
+    private long locationTtlSeconds = 60;
+
+    // Driver ID -> regions it is held under in this instance
+    private final Map<String, Replicas> drivers = new ConcurrentHashMap<>();
+
+    public DriverShardService(GeoMatchingService geoMatchingService, ObjectMapper objectMapper) {
+        this.geoMatchingService = geoMatchingService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Apply one driver-locations record: a location, or a tombstone when the value is null or too old
+     */
+    public void apply(ConsumerRecord<String, String> record) throws IOException {
+        int separator = record.key().indexOf('/');
+        String region = record.key().substring(0, separator);
+        String driverId = record.key().substring(separator + 1);
+        int partition = record.partition();
+
+        if (record.value() == null || record.timestamp() < System.currentTimeMillis() - locationTtlSeconds * 1000) {
+            drivers.computeIfPresent(driverId, (id, replicas) -> {
+                replicas.partitions.remove(region);
+                if (!replicas.partitions.isEmpty()) {
+                    return replicas; // still published under another region
+                }
+                geoMatchingService.removeDriver(id);
+                return null;
+            });
+            return;
+        }
+
+        DriverLocation location = objectMapper.readValue(record.value(), DriverLocation.class);
+        drivers.compute(driverId, (id, replicas) -> {
+            if (replicas == null) {
+                replicas = new Replicas();
+            }
+            replicas.partitions.put(region, partition);
+            if (location.getTimestamp() >= replicas.timestamp) {
+                replicas.timestamp = location.getTimestamp();
+                geoMatchingService.updateDriverLocation(location);
+            }
+            return replicas;
+        });
+    }
+
+    /**
+     * Drop every driver read from the partition, e.g. when it is revoked in a rebalance
+     * @return number of drivers removed
+     */
+    public int dropPartition(int partition) {
+        int[] removed = {0};
+        for (String driverId : drivers.keySet()) {
+            drivers.computeIfPresent(driverId, (id, replicas) -> {
+                replicas.partitions.values().removeIf(p -> p == partition);
+                if (!replicas.partitions.isEmpty()) {
+                    return replicas;
+                }
+                geoMatchingService.removeDriver(id);
+                removed[0]++;
+                return null;
+            });
+        }
+        log.info("Dropped {} drivers of driver-locations partition {}", removed[0], partition);
+        return removed[0];
+    }
+
+    public int size() {
+        return drivers.size();
+    }
+
+    // Only touched inside the drivers map's compute
+    private static final class Replicas {
+        // Region -> driver-locations partition its copy was read from
+        final Map<String, Integer> partitions = new HashMap<>();
+        // Timestamp of the indexed location
+        long timestamp;
+    }
+}
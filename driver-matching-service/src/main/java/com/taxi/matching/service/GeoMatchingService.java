@@ -1,59 +1,47 @@
 package com.taxi.matching.service;
 
 import com.taxi.matching.model.DriverLocation;
+import com.taxi.matching.util.DriverSpatialIndex;
 import com.taxi.matching.util.GeohashUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
-import jakarta.annotation.PostConstruct;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class GeoMatchingService {
     
     private static final Logger log = LoggerFactory.getLogger(GeoMatchingService.class);
     
-    // Grid-based storage: geohash -> list of drivers in that area
-    private final Map<String, List<DriverLocation>> grid = new ConcurrentHashMap<>();
+    public static final int GRID_PRECISION = 6;
     
-    // Driver ID -> current location for quick lookup
-    private final Map<String, DriverLocation> driverLocations = new ConcurrentHashMap<>();
+    private static final double NEAREST_DRIVER_RADIUS_KM = 10;
     
-    public void updateDriverLocation(DriverLocation location) {
-        String geohash = GeohashUtils.encode(location.getLat(), location.getLng(), 6);
-        
-        // Update driver's current location
-        driverLocations.put(location.getDriverId(), location);
-        
-        // Add to grid
-        grid.computeIfAbsent(geohash, k -> new ArrayList<>()).add(location);
+    // Searches never reach further than this, whatever the caller asks for
+    public static final double MAX_SEARCH_RADIUS_KM = 50;
+    
+    // Grid-based storage: each driver sits in exactly one geohash cell
+    private final DriverSpatialIndex index = new DriverSpatialIndex(GRID_PRECISION);
+    
+    /**
+     * @return the long geohash grid cell the driver is now indexed under
+     */
+    public long updateDriverLocation(DriverLocation location) {
+        long geohash = index.update(location);
         
-        log.info("Updated driver {} location: lat={}, lng={}, geohash={}", 
-                location.getDriverId(), location.getLat(), location.getLng(), geohash);
+        if (log.isTraceEnabled()) {
+            log.trace("Updated driver {} location: lat={}, lng={}, geohash={}", 
+                    location.getDriverId(), location.getLat(), location.getLng(), GeohashUtils.toBase32(geohash));
+        }
+        return geohash;
     }
     
+    /**
+     * All drivers within maxDistance km (at most MAX_SEARCH_RADIUS_KM) of the given point, nearest first
+     */
     public List<DriverLocation> findNearbyDrivers(double lat, double lng, int maxDistance) {
-        String geohash = GeohashUtils.encode(lat, lng, 6);
-        List<DriverLocation> nearbyDrivers = new ArrayList<>();
-        
-        // Get drivers from the same geohash area
-        List<DriverLocation> driversInArea = grid.getOrDefault(geohash, new ArrayList<>());
-        
-        for (DriverLocation driver : driversInArea) {
-            double distance = GeohashUtils.distance(lat, lng, driver.getLat(), driver.getLng());
-            if (distance <= maxDistance) {
-                nearbyDrivers.add(driver);
-            }
-        }
-        
-        // Sort by distance
-        nearbyDrivers.sort((d1, d2) -> {
-            double dist1 = GeohashUtils.distance(lat, lng, d1.getLat(), d1.getLng());
-            double dist2 = GeohashUtils.distance(lat, lng, d2.getLat(), d2.getLng());
-            return Double.compare(dist1, dist2);
-        });
+        List<DriverLocation> nearbyDrivers = index.nearest(lat, lng, Integer.MAX_VALUE, radius(maxDistance));
         
         log.info("Found {} nearby drivers for location lat={}, lng={}", 
                 nearbyDrivers.size(), lat, lng);
@@ -61,31 +49,29 @@ public class GeoMatchingService {
         return nearbyDrivers;
     }
     
+    /**
+     * The k drivers nearest to the given point within maxDistanceKm, nearest first.
+     * Searches outward ring by ring of neighbouring geohash cells and stops as soon
+     * as no unvisited ring can hold a closer driver.
+     */
+    public List<DriverLocation> findNearestDrivers(double lat, double lng, int k, double maxDistanceKm) {
+        return index.nearest(lat, lng, k, radius(maxDistanceKm));
+    }
+    
     public Optional<DriverLocation> findNearestDriver(double lat, double lng) {
-        List<DriverLocation> nearby = findNearbyDrivers(lat, lng, 10); // 10km radius
-        return nearby.stream().findFirst();
+        List<DriverLocation> nearest = findNearestDrivers(lat, lng, 1, NEAREST_DRIVER_RADIUS_KM);
+        return nearest.stream().findFirst();
     }
     
     public List<DriverLocation> getAllDrivers() {
-        return new ArrayList<>(driverLocations.values());
+        return index.snapshot();
     }
     
     public void removeDriver(String driverId) {
-        driverLocations.remove(driverId);
-        grid.values().forEach(drivers -> 
-            drivers.removeIf(driver -> driver.getDriverId().equals(driverId)));
+        index.remove(driverId);
     }
     
-    @PostConstruct
-    public void initializeDemoDrivers() {
-        log.info("Initializing demo drivers for testing...");
-        
-        // Add some demo drivers in different locations
-        updateDriverLocation(new DriverLocation("demo-driver", 17.4915584, 78.381056)); // Kukatpally
-        updateDriverLocation(new DriverLocation("driver1", 17.3457176, 78.5522296)); // L.B. Nagar
-        updateDriverLocation(new DriverLocation("driver2", 17.3850, 78.4867)); // Secunderabad
-        updateDriverLocation(new DriverLocation("driver3", 17.4065, 78.4772)); // Begumpet
-        
-        log.info("Demo drivers initialized. Total drivers: {}", driverLocations.size());
+    private static double radius(double maxDistanceKm) {
+        return Math.min(maxDistanceKm, MAX_SEARCH_RADIUS_KM);
     }
 } 
\ No newline at end of file
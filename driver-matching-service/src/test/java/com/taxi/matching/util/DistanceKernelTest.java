@@ -0,0 +1,82 @@
+package com.taxi.matching.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DistanceKernelTest {
+
+    @Test
+    void topKDrainsTheSmallestKeysNearestFirst() {
+        Random random = new Random(23);
+        DistanceKernel.TopK topK = new DistanceKernel.TopK();
+        for (int k : new int[]{1, 7, 16, 100, 1_000}) {
+            double[] keys = random.doubles(500).toArray();
+            topK.reset(k);
+            for (int i = 0; i < keys.length; i++) {
+                topK.offer(i, keys[i]);
+            }
+
+            int[] expected = IntStream.range(0, keys.length).boxed()
+                    .sorted(Comparator.comparingDouble(i -> keys[i]))
+                    .limit(k)
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            int[] out = new int[Math.min(k, keys.length)];
+            assertEquals(expected.length, topK.size());
+            assertEquals(expected.length, topK.drainAscending(out));
+            assertEquals(Arrays.toString(expected), Arrays.toString(out), "k=" + k);
+            assertEquals(0, topK.size());
+        }
+    }
+
+    @Test
+    void topKWorstIsTheLargestKeyHeld() {
+        DistanceKernel.TopK topK = new DistanceKernel.TopK().reset(3);
+        topK.offer(0, 5);
+        topK.offer(1, 1);
+        assertEquals(5, topK.worst(), 0);
+        topK.offer(2, 3);
+        assertTrue(topK.isFull());
+        topK.offer(3, 4);
+        assertEquals(4, topK.worst(), 0);
+        topK.offer(4, 9);
+        assertEquals(4, topK.worst(), 0);
+    }
+
+    @Test
+    void approximateDistanceTakesTheShortWayAroundTheAntimeridian() {
+        double[] lats = {-17.7, -17.7};
+        double[] lngs = {-179.99, 179.99};
+        double[] out = new double[2];
+        DistanceKernel.approxSquaredDistances(-17.7, 179.99, DistanceKernel.kmPerLngDegree(-17.7), lats, lngs, 0, 2, out);
+
+        double expected = DistanceKernel.haversine(-17.7, 179.99, -17.7, -179.99);
+        assertEquals(expected, Math.sqrt(out[0]), 0.01);
+        assertEquals(0, out[1], 0);
+    }
+
+    @Test
+    void approximateDistanceStaysCloseToHaversineAtCityScale() {
+        Random random = new Random(29);
+        int n = 1_000;
+        double lat = 17.385;
+        double lng = 78.4867;
+        double[] lats = random.doubles(n, lat - 0.2, lat + 0.2).toArray();
+        double[] lngs = random.doubles(n, lng - 0.2, lng + 0.2).toArray();
+        double[] approx = new double[n];
+        double[] exact = new double[n];
+        DistanceKernel.approxSquaredDistances(lat, lng, DistanceKernel.kmPerLngDegree(lat), lats, lngs, 0, n, approx);
+        DistanceKernel.haversineDistances(lat, lng, lats, lngs, 0, n, exact);
+
+        for (int i = 0; i < n; i++) {
+            assertEquals(exact[i], Math.sqrt(approx[i]), exact[i] * 0.005 + 1e-9);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.taxi.matching.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeohashUtilsTest {
+
+    @Test
+    void encodesKnownPoint() {
+        assertEquals("u4pruydqqvj", GeohashUtils.encode(57.64911, 10.40744, 11));
+        assertEquals("tepf", GeohashUtils.encode(17.385, 78.4867, 4));
+    }
+
+    @Test
+    void base32RoundTrips() {
+        Random random = new Random(3);
+        for (int i = 0; i < 10_000; i++) {
+            int precision = 1 + random.nextInt(GeohashUtils.MAX_PRECISION);
+            long geohash = GeohashUtils.encodeLong(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180, precision);
+            String base32 = GeohashUtils.toBase32(geohash);
+            assertEquals(precision, base32.length());
+            assertEquals(geohash, GeohashUtils.fromBase32(base32));
+            assertEquals(geohash, GeohashUtils.fromBase32(base32.toUpperCase()));
+        }
+    }
+
+    @Test
+    void cellContainsEncodedPoint() {
+        Random random = new Random(5);
+        for (int i = 0; i < 10_000; i++) {
+            int precision = 1 + random.nextInt(GeohashUtils.MAX_PRECISION);
+            double lat = random.nextDouble() * 180 - 90;
+            double lng = random.nextDouble() * 360 - 180;
+            long geohash = GeohashUtils.encodeLong(lat, lng, precision);
+
+            double south = GeohashUtils.row(geohash) * GeohashUtils.cellHeight(precision) - 90;
+            double west = GeohashUtils.col(geohash) * GeohashUtils.cellWidth(precision) - 180;
+            assertTrue(lat >= south && lat < south + GeohashUtils.cellHeight(precision), "lat " + lat + " outside its cell");
+            assertTrue(lng >= west && lng < west + GeohashUtils.cellWidth(precision), "lng " + lng + " outside its cell");
+            assertEquals(geohash, GeohashUtils.fromRowCol(GeohashUtils.row(geohash), GeohashUtils.col(geohash), precision));
+        }
+    }
+
+    @Test
+    void neighbourIsTheAdjacentCell() {
+        for (int precision = 1; precision <= GeohashUtils.MAX_PRECISION; precision++) {
+            double height = GeohashUtils.cellHeight(precision);
+            double width = GeohashUtils.cellWidth(precision);
+            long geohash = GeohashUtils.encodeLong(17.385, 78.4867, precision);
+            double centreLat = GeohashUtils.row(geohash) * height - 90 + height / 2;
+            double centreLng = GeohashUtils.col(geohash) * width - 180 + width / 2;
+
+            assertEquals(GeohashUtils.encodeLong(centreLat + height, centreLng, precision), GeohashUtils.neighbour(geohash, 1, 0));
+            assertEquals(GeohashUtils.encodeLong(centreLat - height, centreLng, precision), GeohashUtils.neighbour(geohash, -1, 0));
+            assertEquals(GeohashUtils.encodeLong(centreLat, centreLng + width, precision), GeohashUtils.neighbour(geohash, 0, 1));
+            assertEquals(GeohashUtils.encodeLong(centreLat, centreLng - width, precision), GeohashUtils.neighbour(geohash, 0, -1));
+            assertEquals(geohash, GeohashUtils.neighbour(GeohashUtils.neighbour(geohash, 1, -3), -1, 3));
+        }
+    }
+
+    @Test
+    void neighboursWrapAroundTheAntimeridian() {
+        for (int precision = 1; precision <= GeohashUtils.MAX_PRECISION; precision++) {
+            long east = GeohashUtils.encodeLong(-17.7, 179.9999999, precision);
+            long west = GeohashUtils.encodeLong(-17.7, -179.9999999, precision);
+            assertEquals(GeohashUtils.row(east), GeohashUtils.row(west));
+            assertEquals(west, GeohashUtils.neighbour(east, 0, 1));
+            assertEquals(east, GeohashUtils.neighbour(west, 0, -1));
+        }
+    }
+
+    @Test
+    void noNeighbourPastThePoles() {
+        for (int precision = 1; precision <= GeohashUtils.MAX_PRECISION; precision++) {
+            long north = GeohashUtils.encodeLong(90, 0, precision);
+            long south = GeohashUtils.encodeLong(-90, 0, precision);
+            assertEquals(Math.round(180 / GeohashUtils.cellHeight(precision)) - 1, GeohashUtils.row(north));
+            assertEquals(0, GeohashUtils.row(south));
+            assertEquals(-1, GeohashUtils.neighbour(north, 1, 0));
+            assertEquals(-1, GeohashUtils.neighbour(south, -1, 0));
+            assertEquals(GeohashUtils.row(north), GeohashUtils.row(GeohashUtils.neighbour(north, 0, 1)));
+        }
+    }
+
+    @Test
+    void parentAndRangeBoundDescendants() {
+        Random random = new Random(7);
+        for (int i = 0; i < 1_000; i++) {
+            double lat = random.nextDouble() * 180 - 90;
+            double lng = random.nextDouble() * 360 - 180;
+            long child = GeohashUtils.encodeLong(lat, lng, 6);
+            long parent = GeohashUtils.encodeLong(lat, lng, 4);
+
+            assertEquals(parent, GeohashUtils.parent(child, 4));
+            assertTrue(GeohashUtils.toBase32(child).startsWith(GeohashUtils.toBase32(parent)));
+            assertTrue(GeohashUtils.rangeMin(parent, 6) <= child && child <= GeohashUtils.rangeMax(parent, 6));
+        }
+    }
+
+    @Test
+    void rejectsInvalidBase32() {
+        assertThrows(IllegalArgumentException.class, () -> GeohashUtils.fromBase32(""));
+        assertThrows(IllegalArgumentException.class, () -> GeohashUtils.fromBase32("tepa"));
+        assertThrows(IllegalArgumentException.class, () -> GeohashUtils.fromBase32("tepgtepgtepgt"));
+    }
+}
@@ -799,6 +799,9 @@ function initMap() {
     
     console.log('Map click listener added successfully');
     
+    // Registered once here, not per connection; sends nothing while the socket is closed
+    map.addListener('idle', sendViewportSubscription);
+    
     // Initialize WebSocket connection
     initWebSocket();
     
@@ -2292,6 +2295,9 @@ function initWebSocket() {
     websocket.onopen = function(event) {
         console.log('WebSocket connected');
         
+        // Only receive drivers inside the visible map area; initMap re-sends it whenever the map settles
+        sendViewportSubscription();
+        
         // Update status indicator
         const statusIndicator = document.getElementById('statusIndicator');
         if (statusIndicator) {
@@ -2303,8 +2309,10 @@ function initWebSocket() {
     websocket.onmessage = function(event) {
         console.log('WebSocket message received:', event.data);
         try {
+            // The server batches updates: each frame is an array of the latest driver locations
             const driverData = JSON.parse(event.data);
-            updateDriverLocation(driverData);
+            const updates = Array.isArray(driverData) ? driverData : [driverData];
+            updates.forEach(updateDriverLocation);
         } catch (error) {
             console.error('Error parsing WebSocket message:', error);
         }
@@ -2346,6 +2354,23 @@ function initWebSocket() {
     }
 }
 
+// Subscribe the driver location socket to the current map viewport
+function sendViewportSubscription() {
+    if (!websocket || websocket.readyState !== WebSocket.OPEN || !map || !map.getBounds()) {
+        return;
+    }
+    const bounds = map.getBounds();
+    websocket.send(JSON.stringify({
+        type: 'SUBSCRIBE',
+        bbox: {
+            south: bounds.getSouthWest().lat(),
+            west: bounds.getSouthWest().lng(),
+            north: bounds.getNorthEast().lat(),
+            east: bounds.getNorthEast().lng()
+        }
+    }));
+}
+
 // Update driver location on map
 function updateDriverLocation(driverData) {
     const driverId = driverData.driverId;
@@ -0,0 +1,67 @@
+package com.taxi.benchmarks;
+
+import com.taxi.booking.util.DistanceCalculator;
+import com.taxi.booking.util.DistanceKernel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-pair DistanceCalculator.calculateDistance vs the batch kernels over 5k candidates,
+ * the candidate count of a busy pickup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DistanceBenchmark {
+    
+    private static final int CANDIDATES = 5000;
+    
+    private static final double PICKUP_LAT = 17.4454;
+    private static final double PICKUP_LNG = 78.3772;
+    
+    private double[] lats;
+    private double[] lngs;
+    private double[] distances;
+    private int cursor;
+    
+    @Setup
+    public void setUp() {
+        lats = new double[CANDIDATES];
+        lngs = new double[CANDIDATES];
+        distances = new double[CANDIDATES];
+        HyderabadFleet.positions(new SplittableRandom(42), lats, lngs, CANDIDATES);
+    }
+    
+    @Benchmark
+    public double calculateDistance() {
+        int i = cursor++ % CANDIDATES;
+        return DistanceCalculator.calculateDistance(PICKUP_LAT, PICKUP_LNG, lats[i], lngs[i]);
+    }
+    
+    @Benchmark
+    public double[] haversine5k() {
+        DistanceKernel.haversineDistances(PICKUP_LAT, PICKUP_LNG, lats, lngs, 0, CANDIDATES, distances);
+        return distances;
+    }
+    
+    @Benchmark
+    public double[] equirectangular5k() {
+        DistanceKernel.approxSquaredDistances(PICKUP_LAT, PICKUP_LNG, DistanceKernel.kmPerLngDegree(PICKUP_LAT),
+                lats, lngs, 0, CANDIDATES, distances);
+        return distances;
+    }
+}
@@ -0,0 +1,88 @@
+package com.taxi.benchmarks;
+
+import com.taxi.booking.util.GeohashUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Old String geohash encoder vs the long encoding in GeohashUtils.
+ *
+ * The "AndHash" variants include the hashCode a grid lookup pays for the key,
+ * since the String key is freshly allocated and its hash is never cached.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeohashEncodeBenchmark {
+    
+    private static final int POINTS = 4096;
+    
+    @Param({"6"})
+    public int precision;
+    
+    private double[] lats;
+    private double[] lngs;
+    private int cursor;
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        lats = new double[POINTS];
+        lngs = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            // Greater Hyderabad bounding box
+            lats[i] = 17.20 + random.nextDouble() * 0.45;
+            lngs[i] = 78.25 + random.nextDouble() * 0.45;
+        }
+    }
+    
+    private int next() {
+        cursor = (cursor + 1) & (POINTS - 1);
+        return cursor;
+    }
+    
+    @Benchmark
+    public String legacyEncode() {
+        int i = next();
+        return LegacyGeohash.encode(lats[i], lngs[i], precision);
+    }
+    
+    @Benchmark
+    public int legacyEncodeAndHash() {
+        int i = next();
+        return LegacyGeohash.encode(lats[i], lngs[i], precision).hashCode();
+    }
+    
+    @Benchmark
+    public long encodeLong() {
+        int i = next();
+        return GeohashUtils.encodeLong(lats[i], lngs[i], precision);
+    }
+    
+    @Benchmark
+    public int encodeLongAndHash() {
+        int i = next();
+        return Long.hashCode(GeohashUtils.encodeLong(lats[i], lngs[i], precision));
+    }
+    
+    @Benchmark
+    public String encodeBase32() {
+        int i = next();
+        return GeohashUtils.encode(lats[i], lngs[i], precision);
+    }
+}
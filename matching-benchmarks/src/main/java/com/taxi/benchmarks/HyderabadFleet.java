@@ -0,0 +1,98 @@
+package com.taxi.benchmarks;
+
+import com.taxi.booking.model.DriverLocation;
+
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic driver and rider positions with Hyderabad-style clustering: most points sit
+ * in Gaussian blobs around busy localities, the rest are spread across the city.
+ */
+public final class HyderabadFleet {
+    
+    // lat, lng, relative weight
+    private static final double[][] HOTSPOTS = {
+        {17.4454, 78.3772, 5}, // Hitech City
+        {17.4401, 78.3489, 4}, // Gachibowli
+        {17.4849, 78.4138, 3}, // Kukatpally
+        {17.4399, 78.4983, 3}, // Secunderabad
+        {17.4229, 78.4078, 2}, // Jubilee Hills
+        {17.4065, 78.4772, 2}, // Banjara Hills / Begumpet
+        {17.3850, 78.4867, 3}, // Abids
+        {17.3713, 78.5264, 2}, // Dilsukhnagar
+        {17.3676, 78.5577, 2}, // L.B. Nagar
+        {17.4058, 78.5597, 1}, // Uppal
+    };
+    
+    private static final double MIN_LAT = 17.25;
+    private static final double MAX_LAT = 17.60;
+    private static final double MIN_LNG = 78.25;
+    private static final double MAX_LNG = 78.65;
+    
+    // ~1.5km standard deviation around each hotspot
+    private static final double SPREAD_DEGREES = 0.0135;
+    
+    private static final double CLUSTERED_SHARE = 0.8;
+    
+    private static final double TOTAL_WEIGHT;
+    
+    static {
+        double total = 0;
+        for (double[] hotspot : HOTSPOTS) {
+            total += hotspot[2];
+        }
+        TOTAL_WEIGHT = total;
+    }
+    
+    private HyderabadFleet() {
+    }
+    
+    /**
+     * Fill lats/lngs with n clustered positions
+     */
+    public static void positions(SplittableRandom random, double[] lats, double[] lngs, int n) {
+        for (int i = 0; i < n; i++) {
+            if (random.nextDouble() < CLUSTERED_SHARE) {
+                double[] hotspot = pickHotspot(random);
+                lats[i] = hotspot[0] + gaussian(random) * SPREAD_DEGREES;
+                lngs[i] = hotspot[1] + gaussian(random) * SPREAD_DEGREES;
+            } else {
+                lats[i] = MIN_LAT + random.nextDouble() * (MAX_LAT - MIN_LAT);
+                lngs[i] = MIN_LNG + random.nextDouble() * (MAX_LNG - MIN_LNG);
+            }
+        }
+    }
+    
+    public static DriverLocation[] drivers(SplittableRandom random, int n) {
+        double[] lats = new double[n];
+        double[] lngs = new double[n];
+        positions(random, lats, lngs, n);
+        DriverLocation[] drivers = new DriverLocation[n];
+        for (int i = 0; i < n; i++) {
+            drivers[i] = new DriverLocation(driverId(i), lats[i], lngs[i]);
+        }
+        return drivers;
+    }
+    
+    public static String driverId(int i) {
+        return "driver-" + i;
+    }
+    
+    private static double[] pickHotspot(SplittableRandom random) {
+        double pick = random.nextDouble() * TOTAL_WEIGHT;
+        for (double[] hotspot : HOTSPOTS) {
+            pick -= hotspot[2];
+            if (pick <= 0) {
+                return hotspot;
+            }
+        }
+        return HOTSPOTS[HOTSPOTS.length - 1];
+    }
+    
+    // Box-Muller; SplittableRandom has no nextGaussian on Java 17
+    private static double gaussian(SplittableRandom random) {
+        double u = 1 - random.nextDouble();
+        double v = random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * v);
+    }
+}
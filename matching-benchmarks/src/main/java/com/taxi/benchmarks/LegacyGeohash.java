@@ -0,0 +1,55 @@
+package com.taxi.benchmarks;
+
+/**
+ * The StringBuilder/double[] geohash encoder GeohashUtils used before the long encoding,
+ * kept verbatim as the baseline for {@link GeohashEncodeBenchmark}.
+ */
+public final class LegacyGeohash {
+    
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+    
+    private LegacyGeohash() {
+    }
+    
+    public static String encode(double lat, double lon, int precision) {
+        boolean even = true;
+        int bit = 0;
+        int ch = 0;
+        StringBuilder geohash = new StringBuilder();
+        
+        double[] latRange = {-90, 90};
+        double[] lonRange = {-180, 180};
+        
+        while (geohash.length() < precision) {
+            double mid;
+            
+            if (even) {
+                mid = (lonRange[0] + lonRange[1]) / 2;
+                if (lon > mid) {
+                    ch |= 16 >> bit;
+                    lonRange[0] = mid;
+                } else {
+                    lonRange[1] = mid;
+                }
+            } else {
+                mid = (latRange[0] + latRange[1]) / 2;
+                if (lat > mid) {
+                    ch |= 16 >> bit;
+                    latRange[0] = mid;
+                } else {
+                    latRange[1] = mid;
+                }
+            }
+            
+            even = !even;
+            
+            if (++bit == 5) {
+                geohash.append(BASE32[ch]);
+                bit = 0;
+                ch = 0;
+            }
+        }
+        
+        return geohash.toString();
+    }
+}
@@ -0,0 +1,78 @@
+package com.taxi.benchmarks;
+
+import com.taxi.booking.model.DriverLocation;
+import com.taxi.booking.service.GeoMatchingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GeoMatchingService.updateDriverLocation under concurrent writers, modelling the
+ * location WebSocket: each ping moves one driver a few metres, occasionally across
+ * a cell boundary. Writer count defaults to 8; override with -t.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class LocationUpdateBenchmark {
+    
+    @State(Scope.Benchmark)
+    public static class Fleet {
+        
+        @Param({"20000"})
+        public int drivers;
+        
+        GeoMatchingService service;
+        double[] lats;
+        double[] lngs;
+        
+        private final AtomicLong seeds = new AtomicLong(7);
+        
+        @Setup
+        public void setUp() {
+            service = new GeoMatchingService();
+            lats = new double[drivers];
+            lngs = new double[drivers];
+            HyderabadFleet.positions(new SplittableRandom(42), lats, lngs, drivers);
+            for (int i = 0; i < drivers; i++) {
+                service.updateDriverLocation(new DriverLocation(HyderabadFleet.driverId(i), lats[i], lngs[i]));
+            }
+        }
+    }
+    
+    @State(Scope.Thread)
+    public static class Writer {
+        
+        SplittableRandom random;
+        
+        @Setup
+        public void setUp(Fleet fleet) {
+            random = new SplittableRandom(fleet.seeds.incrementAndGet());
+        }
+    }
+    
+    @Benchmark
+    public void updateDriverLocation(Fleet fleet, Writer writer) {
+        int i = writer.random.nextInt(fleet.drivers);
+        // ~25m of jitter per ping, like a bike moving between 3s pings
+        double lat = fleet.lats[i] + (writer.random.nextDouble() - 0.5) * 0.0005;
+        double lng = fleet.lngs[i] + (writer.random.nextDouble() - 0.5) * 0.0005;
+        fleet.service.updateDriverLocation(new DriverLocation(HyderabadFleet.driverId(i), lat, lng));
+    }
+}
@@ -0,0 +1,77 @@
+package com.taxi.benchmarks;
+
+import com.taxi.booking.model.DriverLocation;
+import com.taxi.booking.service.GeoMatchingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matching queries against a clustered Hyderabad fleet of 1k, 10k and 100k drivers.
+ * Pickups are drawn from the same distribution as drivers, as riders book where drivers are.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MatchQueryBenchmark {
+    
+    private static final int PICKUPS = 1024;
+    
+    @Param({"1000", "10000", "100000"})
+    public int drivers;
+    
+    private GeoMatchingService service;
+    private double[] pickupLats;
+    private double[] pickupLngs;
+    private int cursor;
+    
+    @Setup
+    public void setUp() {
+        service = new GeoMatchingService();
+        for (DriverLocation driver : HyderabadFleet.drivers(new SplittableRandom(42), drivers)) {
+            service.updateDriverLocation(driver);
+        }
+        pickupLats = new double[PICKUPS];
+        pickupLngs = new double[PICKUPS];
+        HyderabadFleet.positions(new SplittableRandom(43), pickupLats, pickupLngs, PICKUPS);
+    }
+    
+    private int next() {
+        cursor = (cursor + 1) & (PICKUPS - 1);
+        return cursor;
+    }
+    
+    @Benchmark
+    public Optional<DriverLocation> findNearestDriver() {
+        int i = next();
+        return service.findNearestDriver(pickupLats[i], pickupLngs[i]);
+    }
+    
+    @Benchmark
+    public List<DriverLocation> findNearestTenDrivers() {
+        int i = next();
+        return service.findNearestDrivers(pickupLats[i], pickupLngs[i], 10, 10);
+    }
+    
+    @Benchmark
+    public List<DriverLocation> findNearbyDriversWithin2Km() {
+        int i = next();
+        return service.findNearbyDrivers(pickupLats[i], pickupLngs[i], 2);
+    }
+}